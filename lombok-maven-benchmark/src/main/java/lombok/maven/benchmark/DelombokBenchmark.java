@@ -0,0 +1,103 @@
+package lombok.maven.benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lombok.launch.Delombok;
+
+/**
+ * Benchmarks of {@link Delombok}, the way the plugin drives lombok.
+ * <p>
+ * Cold benchmarks take one shot per fork, with a shadow class loader that no Delombok used before, so
+ * they include loading lombok and the warm-up of javac; warm benchmarks reuse pooled class loaders like
+ * the executions of a long-running build do.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class DelombokBenchmark {
+
+    private static final PrintStream DISCARD = new PrintStream(new OutputStream() {
+        @Override
+        public void write (final int b) {
+        }
+
+        @Override
+        public void write (final byte[] bytes, final int offset, final int length) {
+        }
+    });
+
+    /**
+     * Loading, linking and instantiating lombok's Delombok in a fresh shadow class loader.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Fork(10)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public Delombok coldSetup () throws Exception {
+        // Never released, so that no other invocation gets this class loader...
+        return new Delombok(Delombok.acquireShadowClassLoader());
+    }
+
+    /**
+     * Instantiating lombok's Delombok with a pooled, already linked shadow class loader.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Delombok warmSetup () throws Exception {
+        final ClassLoader shadowClassLoader = Delombok.acquireShadowClassLoader();
+        try {
+            return new Delombok(shadowClassLoader);
+        } finally {
+            Delombok.releaseShadowClassLoader(shadowClassLoader);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Fork(10)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public boolean coldDelombok (final SourceTree tree, final FileCounter counter) throws Exception {
+        return delombok(Delombok.acquireShadowClassLoader(), tree, counter);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public boolean warmDelombok (final SourceTree tree, final FileCounter counter) throws Exception {
+        final ClassLoader shadowClassLoader = Delombok.acquireShadowClassLoader();
+        try {
+            return delombok(shadowClassLoader, tree, counter);
+        } finally {
+            Delombok.releaseShadowClassLoader(shadowClassLoader);
+        }
+    }
+
+    private static boolean delombok (final ClassLoader shadowClassLoader, final SourceTree tree, final FileCounter counter)
+            throws Exception {
+        final Delombok delombok = new Delombok(shadowClassLoader);
+        delombok.setFeedback(DISCARD);
+        delombok.setCharset("UTF-8");
+        delombok.setClasspath(tree.getClassPathString());
+        delombok.setOutput(tree.outputDirectory);
+        delombok.addDirectory(tree.sourceDirectory);
+        final boolean success = delombok.delombok();
+        counter.files += tree.files;
+        counter.bytes += tree.bytes;
+        return success;
+    }
+}
@@ -0,0 +1,153 @@
+package lombok.maven.benchmark;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.model.Build;
+import org.apache.maven.monitor.logging.DefaultLog;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.descriptor.MojoDescriptor;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystemSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.plexus.build.incremental.DefaultBuildContext;
+
+import lombok.maven.DelombokMojo;
+
+/**
+ * Benchmarks the whole <code>delombok</code> goal, as Maven executes it: building the classpath,
+ * listing and delombok-ing the sources, and adding the output directory to the project.
+ * <p>
+ * Maven does not run here, so the mojo is configured like Maven would inject it, with the defaults of
+ * its parameters.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class DelombokMojoBenchmark {
+
+    /**
+     * The <code>threads</code> parameter of the goal.
+     */
+    @Param({"1", "1C"})
+    public String threads;
+
+    /**
+     * The <code>writeIfChanged</code> parameter of the goal; when set, the plugin writes the output files
+     * instead of lombok.
+     */
+    @Param({"false", "true"})
+    public boolean writeIfChanged;
+
+    /** Like in a build, every execution shares the threads of the session. */
+    private final RepositorySystemSession repositorySession = new DefaultRepositorySystemSession();
+
+    private DelombokMojo mojo;
+
+    @Setup(Level.Invocation)
+    public void configure (final SourceTree tree) throws Exception {
+        final MavenProject project = new MavenProject();
+        final Build build = new Build();
+        build.setDirectory(new File(tree.directory, "target").getPath());
+        project.setBuild(build);
+        final Set<Artifact> dependencies = new LinkedHashSet<Artifact>();
+        dependencies.add(artifact("org.slf4j", "slf4j-api", SourceTree.locate(org.slf4j.Logger.class)));
+        project.setArtifacts(dependencies);
+
+        final PluginDescriptor pluginDescriptor = new PluginDescriptor();
+        pluginDescriptor.setPluginArtifact(artifact("org.projectlombok", "lombok-maven-plugin", SourceTree.locate(DelombokMojo.class)));
+        final MojoDescriptor mojoDescriptor = new MojoDescriptor();
+        mojoDescriptor.setGoal("delombok");
+        mojoDescriptor.setPluginDescriptor(pluginDescriptor);
+        final List<Artifact> pluginArtifacts = new ArrayList<Artifact>(
+            Collections.singletonList(artifact("org.projectlombok", "lombok", SourceTree.locate(lombok.Data.class))));
+
+        mojo = new DelombokMojo();
+        mojo.setLog(new DefaultLog(new ConsoleLogger(Logger.LEVEL_DISABLED, "delombok")));
+        set("sourceDirectory", tree.sourceDirectory);
+        set("outputDirectory", tree.outputDirectory);
+        set("skip", false);
+        set("encoding", "UTF-8");
+        set("verbose", false);
+        set("addOutputDirectory", true);
+        set("incremental", false);
+        set("threads", threads);
+        set("reactorThreads", "1C");
+        set("cacheMaxSize", "512M");
+        set("pruneClasspath", false);
+        set("writeIfChanged", writeIfChanged);
+        set("batchSize", 0);
+        set("report", false);
+        set("reportSlowestFiles", 10);
+        // Every invocation must do the work...
+        set("upToDateCheck", false);
+        set("daemon", false);
+        set("daemonIdleTimeout", 1800);
+        set("daemonDirectory", new File(tree.directory, "daemon"));
+        set("project", project);
+        set("pluginArtifacts", pluginArtifacts);
+        set("pluginDescriptor", pluginDescriptor);
+        set("mojoExecution", new MojoExecution(mojoDescriptor, "benchmark"));
+        set("repositorySession", repositorySession);
+        set("buildContext", new DefaultBuildContext());
+    }
+
+    private static Artifact artifact (final String groupId, final String artifactId, final File file) {
+        final Artifact artifact = new DefaultArtifact(groupId, artifactId, "0", Artifact.SCOPE_COMPILE, "jar", null,
+            new DefaultArtifactHandler("jar"));
+        artifact.setFile(file);
+        return artifact;
+    }
+
+    /**
+     * Sets a parameter of the mojo, the way Maven injects it.
+     */
+    private void set (final String name, final Object value) throws IllegalAccessException {
+        for (Class<?> type = mojo.getClass(); null != type; type = type.getSuperclass()) {
+            try {
+                final Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                field.set(mojo, value);
+                return;
+            } catch (final NoSuchFieldException e) {
+                // Declared by a super class...
+            }
+        }
+        throw new IllegalArgumentException("No parameter " + name + " in " + mojo.getClass().getName());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public DelombokMojo execute (final SourceTree tree, final FileCounter counter) throws Exception {
+        mojo.execute();
+        counter.files += tree.files;
+        counter.bytes += tree.bytes;
+        return mojo;
+    }
+}
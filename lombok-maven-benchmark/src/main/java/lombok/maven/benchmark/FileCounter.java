@@ -0,0 +1,26 @@
+package lombok.maven.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the delombok-ed files and their bytes, so that throughput benchmarks also report files and
+ * bytes per second.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class FileCounter {
+
+    public long files;
+
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset () {
+        files = 0;
+        bytes = 0;
+    }
+}
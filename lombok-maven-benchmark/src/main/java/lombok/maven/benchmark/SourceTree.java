@@ -0,0 +1,96 @@
+package lombok.maven.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * A synthetic source tree, generated once per trial in a temporary directory.
+ *
+ * @see SourceTreeGenerator
+ */
+@State(Scope.Benchmark)
+public class SourceTree {
+
+    /**
+     * The number of source files.
+     */
+    @Param({"100", "1000"})
+    public int files;
+
+    /**
+     * The kinds of source files, separated by commas.
+     */
+    @Param({SourceTreeGenerator.ALL_KINDS})
+    public String mix;
+
+    File directory;
+
+    File sourceDirectory;
+
+    File outputDirectory;
+
+    /** The total size of the source files. */
+    long bytes;
+
+    /** What the generated sources need on the classpath: lombok and SLF4J. */
+    List<File> classPath;
+
+    @Setup(Level.Trial)
+    public void generate () throws IOException, URISyntaxException {
+        directory = Files.createTempDirectory("delombok-benchmark").toFile();
+        sourceDirectory = new File(directory, "src");
+        outputDirectory = new File(directory, "out");
+        bytes = SourceTreeGenerator.generate(sourceDirectory, files, mix);
+        classPath = Arrays.asList(locate(lombok.Data.class), locate(org.slf4j.Logger.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void delete () throws IOException {
+        Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile (final Path file, final BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory (final Path dir, final IOException e) throws IOException {
+                if (null != e) {
+                    throw e;
+                }
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    String getClassPathString () {
+        final StringBuilder builder = new StringBuilder();
+        for (final File file : classPath) {
+            builder.append(file).append(File.pathSeparatorChar);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * The jar, or directory, a class was loaded from.
+     */
+    static File locate (final Class<?> type) throws URISyntaxException {
+        return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+}
@@ -0,0 +1,144 @@
+package lombok.maven.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Locale;
+
+/**
+ * Writes synthetic trees of lombok annotated sources.
+ * <p>
+ * Every file is one of the kinds of the annotation mix, taken in turn: <code>data</code>
+ * (<code>@Data</code>), <code>builder</code> (<code>@Builder</code>),
+ * <code>value</code> (<code>@Value</code>), <code>slf4j</code> (<code>@Slf4j</code>) and
+ * <code>generics</code> (<code>@Data</code> with nested generic types).  The <code>large</code> kind, a
+ * <code>@Data</code> class with {@value #LARGE_FIELDS} fields, is not part of the default mix; it
+ * stands for large generated sources.  Files are spread over
+ * packages of {@value #FILES_PER_PACKAGE}, and every file refers to the previous one of its package, so
+ * that delombok has to resolve types across files like in a real project.
+ */
+final class SourceTreeGenerator {
+
+    static final String ALL_KINDS = "data,builder,value,slf4j,generics";
+
+    private static final int FILES_PER_PACKAGE = 50;
+
+    private static final int LARGE_FIELDS = 200;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private SourceTreeGenerator () {
+    }
+
+    /**
+     * Generates a source tree.
+     *
+     * @param directory the source directory to write to.
+     * @param fileCount the number of files.
+     * @param mix the kinds of files, separated by commas.
+     * @return the total size of the files.
+     * @throws IllegalArgumentException if the mix names an unknown kind.
+     */
+    static long generate (final File directory, final int fileCount, final String mix) throws IOException {
+        final String[] kinds = mix.split(",");
+        for (int i = 0; i < kinds.length; i++) {
+            kinds[i] = kinds[i].trim().toLowerCase(Locale.ROOT);
+        }
+        long size = 0;
+        for (int i = 0; i < fileCount; i++) {
+            final String packageName = "bench.p" + (i / FILES_PER_PACKAGE);
+            final String kind = kinds[i % kinds.length];
+            final String className = className(kind, i);
+            final String previous = 0 == i % FILES_PER_PACKAGE ? "Object" : className(kinds[(i - 1) % kinds.length], i - 1);
+            final File file = new File(directory, packageName.replace('.', File.separatorChar) + File.separatorChar + className + ".java");
+            final File parent = file.getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Unable to create directory " + parent);
+            }
+            final byte[] content = source(kind, packageName, className, previous).getBytes(UTF_8);
+            Files.write(file.toPath(), content);
+            size += content.length;
+        }
+        return size;
+    }
+
+    private static String className (final String kind, final int index) {
+        return Character.toUpperCase(kind.charAt(0)) + kind.substring(1) + "Type" + index;
+    }
+
+    private static String source (final String kind, final String packageName, final String className, final String previous) {
+        final StringBuilder source = new StringBuilder();
+        source.append("package ").append(packageName).append(";\n\n");
+        if ("data".equals(kind)) {
+            source.append("import java.util.List;\n")
+                .append("import lombok.Data;\n\n")
+                .append("@Data\n")
+                .append("public class ").append(className).append(" {\n")
+                .append("    private final String name;\n")
+                .append("    private int count;\n")
+                .append("    private List<String> tags;\n")
+                .append("    private ").append(previous).append(" previous;\n")
+                .append("}\n");
+        } else if ("builder".equals(kind)) {
+            source.append("import java.util.List;\n")
+                .append("import lombok.Builder;\n")
+                .append("import lombok.Getter;\n\n")
+                .append("@Builder(toBuilder = true)\n")
+                .append("@Getter\n")
+                .append("public class ").append(className).append(" {\n")
+                .append("    private final String name;\n")
+                .append("    private final long timestamp;\n")
+                .append("    private final List<String> tags;\n")
+                .append("    private final ").append(previous).append(" previous;\n")
+                .append("}\n");
+        } else if ("value".equals(kind)) {
+            source.append("import lombok.Value;\n")
+                .append("import lombok.With;\n\n")
+                .append("@Value\n")
+                .append("public class ").append(className).append(" {\n")
+                .append("    String name;\n")
+                .append("    @With double amount;\n")
+                .append("    ").append(previous).append(" previous;\n")
+                .append("}\n");
+        } else if ("slf4j".equals(kind)) {
+            source.append("import lombok.NonNull;\n")
+                .append("import lombok.extern.slf4j.Slf4j;\n\n")
+                .append("@Slf4j\n")
+                .append("public class ").append(className).append(" {\n")
+                .append("    public String process(@NonNull final ").append(previous).append(" previous, final int attempt) {\n")
+                .append("        log.info(\"Processing {} (attempt {})\", previous, attempt);\n")
+                .append("        return String.valueOf(previous);\n")
+                .append("    }\n")
+                .append("}\n");
+        } else if ("generics".equals(kind)) {
+            source.append("import java.util.List;\n")
+                .append("import java.util.Map;\n")
+                .append("import java.util.Optional;\n")
+                .append("import lombok.AllArgsConstructor;\n")
+                .append("import lombok.Data;\n")
+                .append("import lombok.NoArgsConstructor;\n\n")
+                .append("@Data\n")
+                .append("@NoArgsConstructor\n")
+                .append("@AllArgsConstructor\n")
+                .append("public class ").append(className).append("<K extends Comparable<? super K>, V> {\n")
+                .append("    private Map<K, List<Optional<V>>> values;\n")
+                .append("    private Map<String, Map<K, ? extends List<? super V>>> index;\n")
+                .append("    private List<").append(previous).append("> previous;\n")
+                .append("}\n");
+        } else if ("large".equals(kind)) {
+            source.append("import java.util.List;\n")
+                .append("import lombok.Data;\n\n")
+                .append("@Data\n")
+                .append("public class ").append(className).append(" {\n");
+            for (int i = 0; i < LARGE_FIELDS; i++) {
+                source.append("    private ").append(0 == i % 2 ? "String" : "List<String>").append(" field").append(i).append(";\n");
+            }
+            source.append("    private ").append(previous).append(" previous;\n")
+                .append("}\n");
+        } else {
+            throw new IllegalArgumentException("Unknown kind of file: " + kind + "; expected some of " + ALL_KINDS + ",large");
+        }
+        return source.toString();
+    }
+}
@@ -1,81 +1,338 @@
 package lombok.launch;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Since the Shadow Class Loader hides Lombok's internal Delombok, we need to access it via reflection.
+ * <p>
+ * Loading lombok's Delombok and linking its methods is only done once per shadow class loader; the
+ * resulting handles are cached for the lifetime of the plugin's class realm, which Maven shares between
+ * the executions of a build that use the same lombok version.
  *
  * @see <a href="https://github.com/rzwitserloot/lombok/blob/master/src/delombok/lombok/delombok/Delombok.java">lombok.delombok.Delombok</a>
  */
 public class Delombok {
 
+    /**
+     * The linked methods of lombok's Delombok, as loaded by one shadow class loader.
+     */
+    private static final class Handles {
+        final String lombokVersion;
+        final MethodHandle constructor;
+        final MethodHandle addDirectory;
+        final MethodHandle addFile;
+        final MethodHandle delombok;
+        final MethodHandle formatOptionsToMap;
+        final MethodHandle setVerbose;
+        final MethodHandle setCharset;
+        final MethodHandle setFeedback;
+        final MethodHandle setClasspath;
+        final MethodHandle setFormatPreferences;
+        final MethodHandle setOutput;
+        final MethodHandle setSourcepath;
+        final MethodHandle setWriter;
+
+        Handles (final ClassLoader shadowClassLoader) throws ClassNotFoundException, IllegalAccessException, NoSuchMethodException {
+            final Class<?> delombokClass = shadowClassLoader.loadClass("lombok.delombok.Delombok");
+            final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            this.lombokVersion = lombokVersion(shadowClassLoader);
+            this.constructor = lookup.findConstructor(delombokClass, MethodType.methodType(void.class));
+            this.addDirectory = lookup.findVirtual(delombokClass, "addDirectory", MethodType.methodType(void.class, File.class));
+            this.addFile = lookup.findVirtual(delombokClass, "addFile", MethodType.methodType(void.class, File.class, String.class));
+            this.delombok = lookup.findVirtual(delombokClass, "delombok", MethodType.methodType(boolean.class));
+            this.formatOptionsToMap = lookup.findStatic(delombokClass, "formatOptionsToMap", MethodType.methodType(Map.class, List.class));
+            this.setVerbose = lookup.findVirtual(delombokClass, "setVerbose", MethodType.methodType(void.class, boolean.class));
+            this.setCharset = lookup.findVirtual(delombokClass, "setCharset", MethodType.methodType(void.class, String.class));
+            this.setFeedback = lookup.findVirtual(delombokClass, "setFeedback", MethodType.methodType(void.class, PrintStream.class));
+            this.setClasspath = lookup.findVirtual(delombokClass, "setClasspath", MethodType.methodType(void.class, String.class));
+            this.setFormatPreferences = lookup.findVirtual(delombokClass, "setFormatPreferences", MethodType.methodType(void.class, Map.class));
+            this.setOutput = lookup.findVirtual(delombokClass, "setOutput", MethodType.methodType(void.class, File.class));
+            this.setSourcepath = lookup.findVirtual(delombokClass, "setSourcepath", MethodType.methodType(void.class, String.class));
+            this.setWriter = lookup.findVirtual(delombokClass, "setWriter", MethodType.methodType(void.class, Writer.class));
+        }
+
+        private static String lombokVersion (final ClassLoader shadowClassLoader) {
+            try {
+                return String.valueOf(shadowClassLoader.loadClass("lombok.core.Version").getMethod("getFullVersion").invoke(null));
+            } catch (final ReflectiveOperationException e) {
+                return "unknown";
+            }
+        }
+    }
+
+    private static final ConcurrentMap<ClassLoader, Handles> HANDLES = new ConcurrentHashMap<ClassLoader, Handles>();
+
+    /** Shadow class loaders that are not in use by a running Delombok; also guards the fields below. */
+    private static final Deque<ClassLoader> IDLE_SHADOW_CLASS_LOADERS = new ArrayDeque<ClassLoader>();
+
+    /** Whether this version of lombok lets the pool create shadow class loaders of its own. */
+    private static boolean shadowClassLoadersCreatable = true;
+
+    /** Whether the shadow class loader of {@link Main} was leased, when the pool cannot create any. */
+    private static boolean sharedShadowClassLoaderLeased;
+
+    private final Handles handles;
+
     private final Object delombokInstance;
 
-    private final Method addDirectory;
-    private final Method delombok;
-    private final Method formatOptionsToMap;
-    private final Method setVerbose;
-    private final Method setCharset;
-    private final Method setClasspath;
-    private final Method setFormatPreferences;
-    private final Method setOutput;
-    private final Method setSourcepath;
+    private final boolean warm;
 
+    private final long setupNanos;
+
+    /**
+     * Creates a Delombok that loads lombok through the shared shadow class loader of {@link Main}.  The pool
+     * of {@link #acquireShadowClassLoader()} only hands that class loader out when it cannot create others,
+     * in which case concurrent delomboks must lease it instead.
+     */
     public Delombok () throws ClassNotFoundException, IllegalAccessException, InstantiationException, InvocationTargetException, NoSuchMethodException {
-        final ClassLoader shadowClassLoader = Main.getShadowClassLoader();
-        final Class<?> delombokClass = shadowClassLoader.loadClass("lombok.delombok.Delombok");
-        this.delombokInstance = delombokClass.getDeclaredConstructor().newInstance();
-        // Get method handles...
-        this.addDirectory = delombokClass.getMethod("addDirectory", File.class);
-        this.delombok = delombokClass.getMethod("delombok");
-        this.formatOptionsToMap = delombokClass.getMethod("formatOptionsToMap", List.class);
-        this.setVerbose = delombokClass.getMethod("setVerbose", boolean.class);
-        this.setCharset = delombokClass.getMethod("setCharset", String.class);
-        this.setClasspath = delombokClass.getMethod("setClasspath", String.class);
-        this.setFormatPreferences = delombokClass.getMethod("setFormatPreferences", Map.class);
-        this.setOutput = delombokClass.getMethod("setOutput", File.class);
-        this.setSourcepath = delombokClass.getMethod("setSourcepath", String.class);
+        this(Main.getShadowClassLoader());
+    }
+
+    /**
+     * Creates a Delombok that loads lombok through the given shadow class loader.
+     *
+     * @see #acquireShadowClassLoader()
+     */
+    public Delombok (final ClassLoader shadowClassLoader) throws ClassNotFoundException, IllegalAccessException, InstantiationException, InvocationTargetException, NoSuchMethodException {
+        final long start = System.nanoTime();
+        Handles cached = HANDLES.get(shadowClassLoader);
+        this.warm = null != cached;
+        if (null == cached) {
+            // Racing threads may both link the handles; either result is fine...
+            final Handles linked = new Handles(shadowClassLoader);
+            cached = HANDLES.putIfAbsent(shadowClassLoader, linked);
+            if (null == cached) {
+                cached = linked;
+            }
+        }
+        this.handles = cached;
+        try {
+            this.delombokInstance = handles.constructor.invoke();
+        } catch (final Throwable t) {
+            throw wrap(t);
+        }
+        this.setupNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Provides a shadow class loader that is not used by any other Delombok, so that lombok's static
+     * state is not shared with Delombok instances running concurrently.  The class loader must be
+     * given back with {@link #releaseShadowClassLoader(ClassLoader)} once delombok is done, so that
+     * later executions can reuse it instead of loading lombok again.
+     * <p>
+     * The shared shadow class loader of {@link Main} is only handed out if this version of lombok does
+     * not let the pool create others, in which case it is the only one and leases wait for each other.
+     */
+    public static ClassLoader acquireShadowClassLoader () {
+        synchronized (IDLE_SHADOW_CLASS_LOADERS) {
+            final ClassLoader idle = IDLE_SHADOW_CLASS_LOADERS.pollFirst();
+            if (null != idle) {
+                return idle;
+            }
+            if (!shadowClassLoadersCreatable) {
+                return acquireSharedShadowClassLoader();
+            }
+        }
+        final ClassLoader created = newShadowClassLoader();
+        if (null != created) {
+            return created;
+        }
+        synchronized (IDLE_SHADOW_CLASS_LOADERS) {
+            shadowClassLoadersCreatable = false;
+            return acquireSharedShadowClassLoader();
+        }
+    }
+
+    /**
+     * Leases the shadow class loader of {@link Main}, waiting for it to be released if it is leased already.
+     * The caller holds the lock of the pool.
+     */
+    private static ClassLoader acquireSharedShadowClassLoader () {
+        if (!sharedShadowClassLoaderLeased) {
+            sharedShadowClassLoaderLeased = true;
+            return Main.getShadowClassLoader();
+        }
+        boolean interrupted = false;
+        while (IDLE_SHADOW_CLASS_LOADERS.isEmpty()) {
+            try {
+                IDLE_SHADOW_CLASS_LOADERS.wait();
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return IDLE_SHADOW_CLASS_LOADERS.pollFirst();
+    }
+
+    public static void releaseShadowClassLoader (final ClassLoader shadowClassLoader) {
+        synchronized (IDLE_SHADOW_CLASS_LOADERS) {
+            // The most recently used class loader is the warmest...
+            IDLE_SHADOW_CLASS_LOADERS.addFirst(shadowClassLoader);
+            IDLE_SHADOW_CLASS_LOADERS.notify();
+        }
+    }
+
+    /**
+     * Creates a shadow class loader of its own, or returns <code>null</code> if this version of lombok
+     * does not allow it.
+     */
+    private static ClassLoader newShadowClassLoader () {
+        try {
+            final Constructor<?> constructor = Class.forName("lombok.launch.ShadowClassLoader", false, Main.class.getClassLoader())
+                .getDeclaredConstructor(ClassLoader.class, String.class, String.class, List.class, List.class);
+            constructor.setAccessible(true);
+            // Same arguments as lombok.launch.Main uses for the shared shadow class loader...
+            return (ClassLoader)constructor.newInstance(Main.class.getClassLoader(), "lombok", null,
+                Collections.<String>emptyList(), Arrays.asList("lombok.patcher.Symbols"));
+        } catch (final ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Indicates whether lombok's Delombok was already loaded and linked by an earlier instance.
+     */
+    public boolean isWarm () {
+        return warm;
+    }
+
+    /**
+     * The time it took to load, link and instantiate lombok's Delombok.
+     */
+    public long getSetupNanos () {
+        return setupNanos;
+    }
+
+    /**
+     * The version of lombok that is doing the work.
+     */
+    public String getLombokVersion () {
+        return handles.lombokVersion;
+    }
+
+    private static InvocationTargetException wrap (final Throwable t) {
+        if (t instanceof Error) {
+            throw (Error)t;
+        }
+        return new InvocationTargetException(t);
     }
 
     public void addDirectory (final File base) throws IllegalAccessException, IOException, InvocationTargetException {
-        addDirectory.invoke(delombokInstance, base);
+        try {
+            handles.addDirectory.invoke(delombokInstance, base);
+        } catch (final Throwable t) {
+            throw wrap(t);
+        }
+    }
+
+    public void addFile (final File base, final String fileName) throws IllegalAccessException, IOException, InvocationTargetException {
+        try {
+            handles.addFile.invoke(delombokInstance, base, fileName);
+        } catch (final Throwable t) {
+            throw wrap(t);
+        }
     }
 
     public boolean delombok () throws IllegalAccessException, IOException, InvocationTargetException {
-        return Boolean.parseBoolean( delombok.invoke(delombokInstance).toString() );
+        try {
+            return (boolean)handles.delombok.invoke(delombokInstance);
+        } catch (final Throwable t) {
+            throw wrap(t);
+        }
     }
 
     @SuppressWarnings("unchecked")
-    public Map<String, String> formatOptionsToMap (final List<String> formatOptions) throws Exception {
-        return (Map<String, String>)formatOptionsToMap.invoke(null, formatOptions);
+    public Map<String, String> formatOptionsToMap (final List<String> formatOptions) throws IllegalAccessException, InvocationTargetException {
+        try {
+            return (Map<String, String>)handles.formatOptionsToMap.invoke(formatOptions);
+        } catch (final Throwable t) {
+            throw wrap(t);
+        }
     }
 
     public void setVerbose (final boolean verbose) throws IllegalAccessException, InvocationTargetException {
-        setVerbose.invoke(delombokInstance, verbose);
+        try {
+            handles.setVerbose.invoke(delombokInstance, verbose);
+        } catch (final Throwable t) {
+            throw wrap(t);
+        }
     }
 
     public void setCharset (final String charset) throws IllegalAccessException, InvocationTargetException {
-        setCharset.invoke(delombokInstance, charset);
+        try {
+            handles.setCharset.invoke(delombokInstance, charset);
+        } catch (final Throwable t) {
+            throw wrap(t);
+        }
+    }
+
+    public void setFeedback (final PrintStream feedback) throws IllegalAccessException, InvocationTargetException {
+        try {
+            handles.setFeedback.invoke(delombokInstance, feedback);
+        } catch (final Throwable t) {
+            throw wrap(t);
+        }
     }
 
     public void setClasspath (final String classpath) throws IllegalAccessException, InvocationTargetException {
-        setClasspath.invoke(delombokInstance, classpath);
+        try {
+            handles.setClasspath.invoke(delombokInstance, classpath);
+        } catch (final Throwable t) {
+            throw wrap(t);
+        }
     }
 
     public void setFormatPreferences (final Map<String, String> prefs) throws IllegalAccessException, InvocationTargetException {
-        setFormatPreferences.invoke(delombokInstance, prefs);
+        try {
+            handles.setFormatPreferences.invoke(delombokInstance, prefs);
+        } catch (final Throwable t) {
+            throw wrap(t);
+        }
     }
 
     public void setOutput (final File dir) throws IllegalAccessException, InvocationTargetException {
-        setOutput.invoke(delombokInstance, dir);
+        try {
+            handles.setOutput.invoke(delombokInstance, dir);
+        } catch (final Throwable t) {
+            throw wrap(t);
+        }
     }
 
     public void setSourcepath (final String sourcepath) throws IllegalAccessException, InvocationTargetException {
-        setSourcepath.invoke(delombokInstance, sourcepath);
+        try {
+            handles.setSourcepath.invoke(delombokInstance, sourcepath);
+        } catch (final Throwable t) {
+            throw wrap(t);
+        }
+    }
+
+    /**
+     * Sets a writer to print every compilation unit to, instead of writing the output files.  If an
+     * output directory is set, the writer is closed after every unit.
+     */
+    public void setWriter (final Writer writer) throws IllegalAccessException, InvocationTargetException {
+        try {
+            handles.setWriter.invoke(delombokInstance, writer);
+        } catch (final Throwable t) {
+            throw wrap(t);
+        }
     }
 }
@@ -0,0 +1,390 @@
+package lombok.maven;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Fingerprints of the public API of the delombok-ed sources of a source set, so that changes that only
+ * affect method bodies or private members can be told from changes that other modules may have to be
+ * recompiled for.
+ * <p>
+ * The API of a compilation unit is approximated without parsing it: its package, imports and declarations,
+ * with their annotations and modifiers, less the bodies of methods, constructors and initializers and
+ * the private members.  Field initializers are kept, since constants are inlined by the compiler.  The
+ * fingerprint of every unit is kept along with the size and modification time of the file, so that
+ * unchanged files are not read again.
+ */
+final class AbiFingerprint {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String HEADER = "# lombok-maven-plugin abi fingerprint 2";
+
+    private static final String MODULE = "module=";
+
+    /**
+     * Fingerprint of a single compilation unit.
+     */
+    static final class Entry {
+        final long size;
+        final long lastModified;
+        final String hash;
+
+        Entry (final long size, final long lastModified, final String hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+
+    /** Compilation units keyed by their path relative to the output directory, using '/' as separator. */
+    private final SortedMap<String, Entry> entries;
+
+    private final String moduleHash;
+
+    private AbiFingerprint (final SortedMap<String, Entry> entries) {
+        this.entries = entries;
+        final StringBuilder units = new StringBuilder();
+        for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+            units.append(entry.getKey()).append('\t').append(entry.getValue().hash).append('\n');
+        }
+        this.moduleHash = Hashes.hash(units);
+    }
+
+    /**
+     * The fingerprint of the API of all the compilation units.
+     */
+    String getModuleHash () {
+        return moduleHash;
+    }
+
+    Map<String, Entry> getEntries () {
+        return Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Reads fingerprints written by {@link #write(File)}.
+     *
+     * @return the fingerprints, or <code>null</code> if they do not exist or cannot be understood.
+     */
+    static AbiFingerprint read (final File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+            try {
+                if (!HEADER.equals(reader.readLine())) {
+                    return null;
+                }
+                final String moduleLine = reader.readLine();
+                if (null == moduleLine || !moduleLine.startsWith(MODULE)) {
+                    return null;
+                }
+                final SortedMap<String, Entry> entries = new TreeMap<String, Entry>();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // size <TAB> lastModified <TAB> hash <TAB> path
+                    final String[] fields = line.split("\t", 4);
+                    if (fields.length != 4) {
+                        return null;
+                    }
+                    entries.put(fields[3], new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2]));
+                }
+                return new AbiFingerprint(entries);
+            } finally {
+                reader.close();
+            }
+        } catch (final IOException e) {
+            return null;
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the fingerprint of the source set, then that of every compilation unit.
+     */
+    void write (final File file) throws IOException {
+        final File parent = file.getParentFile();
+        if (null != parent && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), UTF_8));
+        try {
+            writer.write(HEADER);
+            writer.write('\n');
+            writer.write(MODULE);
+            writer.write(moduleHash);
+            writer.write('\n');
+            for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+                final Entry value = entry.getValue();
+                writer.write(Long.toString(value.size));
+                writer.write('\t');
+                writer.write(Long.toString(value.lastModified));
+                writer.write('\t');
+                writer.write(value.hash);
+                writer.write('\t');
+                writer.write(entry.getKey());
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Fingerprints the java files of an output directory, reusing the previous fingerprints of files whose
+     * size and modification time are unchanged.
+     *
+     * @param previous the fingerprints of the previous execution; may be <code>null</code>.
+     */
+    static AbiFingerprint scan (final File outputDirectory, final Charset charset, final AbiFingerprint previous)
+            throws IOException {
+        final Map<String, Entry> previousEntries = null == previous ? Collections.<String, Entry>emptyMap() : previous.entries;
+        final SortedMap<String, Entry> entries = new TreeMap<String, Entry>();
+        for (final String path : SourceScanner.ALL.scan(outputDirectory)) {
+            if (!path.endsWith(".java")) {
+                continue;
+            }
+            final File file = new File(outputDirectory, path);
+            final long size = file.length();
+            final long lastModified = file.lastModified();
+            final Entry old = previousEntries.get(path);
+            if (null != old && old.size == size && old.lastModified == lastModified) {
+                entries.put(path, old);
+            } else {
+                final String source = charset.decode(FileBuffers.map(file)).toString();
+                entries.put(path, new Entry(size, lastModified, Hashes.hash(signature(source))));
+            }
+        }
+        return new AbiFingerprint(entries);
+    }
+
+    /**
+     * Extracts the API of a compilation unit, as a line of tokens per declaration.
+     */
+    static String signature (final String source) {
+        final List<String> tokens = tokenize(source);
+        final StringBuilder signature = new StringBuilder();
+        appendMembers(tokens, 0, tokens.size(), false, signature);
+        return signature.toString();
+    }
+
+    /**
+     * Appends the API of the declarations of a compilation unit or a type body.
+     *
+     * @param from the first token of the declarations.
+     * @param to the end of the declarations, e.g. the closing brace of the body.
+     * @param enumBody whether the declarations start with enum constants.
+     */
+    private static void appendMembers (final List<String> tokens, final int from, final int to, final boolean enumBody,
+            final StringBuilder signature) {
+        int i = from;
+        if (enumBody) {
+            // The constants, with their arguments and bodies, up to the first semicolon...
+            int end = i;
+            while (end < to && !";".equals(tokens.get(end))) {
+                end = isOpening(tokens.get(end)) ? skipBalanced(tokens, end) : end + 1;
+            }
+            append(tokens, i, end, signature);
+            i = end + 1;
+        }
+        while (i < to) {
+            if (";".equals(tokens.get(i))) {
+                i++;
+                continue;
+            }
+            // The header of the declaration, up to its semicolon or body...
+            final int start = i;
+            boolean field = false;
+            int end = i;
+            while (end < to) {
+                final String token = tokens.get(end);
+                if (";".equals(token) || ("{".equals(token) && !field)) {
+                    break;
+                }
+                // An initializer, or the default value of an annotation element, which may be an array...
+                if ("=".equals(token) || ("default".equals(token) && end > start && ")".equals(tokens.get(end - 1)))) {
+                    field = true;
+                }
+                end = isOpening(token) ? skipBalanced(tokens, end) : end + 1;
+            }
+            final boolean visible = !isPrivate(tokens, start, end);
+            if (end < to && "{".equals(tokens.get(end))) {
+                final int close = Math.min(skipBalanced(tokens, end), to);
+                if (isType(tokens, start, end)) {
+                    if (visible) {
+                        append(tokens, start, end + 1, signature);
+                        appendMembers(tokens, end + 1, close - 1, isEnum(tokens, start, end), signature);
+                        signature.append("}\n");
+                    }
+                } else if (visible && !isInitializer(tokens, start, end)) {
+                    // A method or constructor, without its body...
+                    append(tokens, start, end, signature);
+                }
+                i = close;
+            } else {
+                if (visible) {
+                    append(tokens, start, end, signature);
+                }
+                i = end + 1;
+            }
+        }
+    }
+
+    private static void append (final List<String> tokens, final int from, final int to, final StringBuilder signature) {
+        for (int i = from; i < to; i++) {
+            if (i > from) {
+                signature.append(' ');
+            }
+            signature.append(tokens.get(i));
+        }
+        signature.append('\n');
+    }
+
+    /**
+     * Indicates whether a header has the private modifier, ignoring annotation arguments and initializers.
+     */
+    private static boolean isPrivate (final List<String> tokens, final int from, final int to) {
+        for (int i = from; i < to; i = isOpening(tokens.get(i)) ? skipBalanced(tokens, i) : i + 1) {
+            final String token = tokens.get(i);
+            if ("=".equals(token)) {
+                return false;
+            }
+            if ("private".equals(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Indicates whether a header declares a class, interface, enum, annotation type or record.
+     */
+    private static boolean isType (final List<String> tokens, final int from, final int to) {
+        for (int i = from; i < to; i = isOpening(tokens.get(i)) ? skipBalanced(tokens, i) : i + 1) {
+            final String token = tokens.get(i);
+            if ("class".equals(token) || "interface".equals(token) || "enum".equals(token)) {
+                return true;
+            }
+            // "record" is only a keyword in front of a name...
+            if ("record".equals(token) && i + 1 < to && Character.isJavaIdentifierStart(tokens.get(i + 1).charAt(0))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isEnum (final List<String> tokens, final int from, final int to) {
+        for (int i = from; i < to; i = isOpening(tokens.get(i)) ? skipBalanced(tokens, i) : i + 1) {
+            if ("enum".equals(tokens.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isInitializer (final List<String> tokens, final int from, final int to) {
+        return from == to || (from + 1 == to && "static".equals(tokens.get(from)));
+    }
+
+    private static boolean isOpening (final String token) {
+        return "(".equals(token) || "[".equals(token) || "{".equals(token);
+    }
+
+    /**
+     * Skips a parenthesized, bracketed or braced group, including nested ones.
+     *
+     * @param from the opening token.
+     * @return the index after the closing token.
+     */
+    private static int skipBalanced (final List<String> tokens, final int from) {
+        int depth = 0;
+        for (int i = from; i < tokens.size(); i++) {
+            final String token = tokens.get(i);
+            if (isOpening(token)) {
+                depth++;
+            } else if (")".equals(token) || "]".equals(token) || "}".equals(token)) {
+                depth--;
+                if (0 == depth) {
+                    return i + 1;
+                }
+            }
+        }
+        return tokens.size();
+    }
+
+    /**
+     * Splits java source into identifiers, literals and single character symbols, leaving out whitespace
+     * and comments.
+     */
+    static List<String> tokenize (final String source) {
+        final List<String> tokens = new ArrayList<String>();
+        final int length = source.length();
+        int i = 0;
+        while (i < length) {
+            final char c = source.charAt(i);
+            final char next = i + 1 < length ? source.charAt(i + 1) : 0;
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if ('/' == c && '/' == next) {
+                while (i < length && '\n' != source.charAt(i)) {
+                    i++;
+                }
+                continue;
+            }
+            if ('/' == c && '*' == next) {
+                i = indexOf(source, "*/", i + 2) + 2;
+                continue;
+            }
+            final int start = i;
+            if ('"' == c && '"' == next && i + 2 < length && '"' == source.charAt(i + 2)) {
+                // A text block, whose escapes may include quotes...
+                i += 3;
+                while (i < length && !source.startsWith("\"\"\"", i)) {
+                    i += '\\' == source.charAt(i) ? 2 : 1;
+                }
+                i += 3;
+            } else if ('"' == c || '\'' == c) {
+                i++;
+                while (i < length && c != source.charAt(i)) {
+                    i += '\\' == source.charAt(i) ? 2 : 1;
+                }
+                i++;
+            } else if (Character.isJavaIdentifierPart(c)) {
+                while (i < length && Character.isJavaIdentifierPart(source.charAt(i))) {
+                    i++;
+                }
+            } else {
+                i++;
+            }
+            tokens.add(source.substring(start, Math.min(i, length)));
+        }
+        return tokens;
+    }
+
+    /**
+     * Finds a string, or returns the length of the source if it is not there.
+     */
+    private static int indexOf (final String source, final String string, final int from) {
+        final int index = source.indexOf(string, from);
+        return index < 0 ? source.length() : index;
+    }
+}
@@ -5,21 +5,36 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.charset.Charset;
 import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.JavaVersion;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.SystemUtils;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugin.descriptor.PluginDescriptor;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
+import org.eclipse.aether.RepositorySystemSession;
 import org.sonatype.plexus.build.incremental.BuildContext;
 
 import lombok.launch.Delombok;
@@ -62,6 +77,264 @@ public abstract class AbstractDelombokMojo extends AbstractMojo {
     @Parameter
     protected Map<String, String> formatPreferences;
 
+    /**
+     * Patterns of the files to delombok, relative to the source directory, e.g. <code>**&#47;*.java</code>.
+     * <code>*</code> matches within a directory and <code>**</code> across directories.  By default, every
+     * file is processed.
+     */
+    @Parameter
+    protected List<String> includes;
+
+    /**
+     * Patterns of the files to leave out, e.g. <code>generated/</code> or <code>**&#47;legacy/**</code>.
+     * Excluded files are neither delombok-ed nor copied to the output directory, and directories that are
+     * excluded entirely are not even searched; delombok still finds their classes on the sourcepath.
+     */
+    @Parameter
+    protected List<String> excludes;
+
+    /**
+     * Incremental flag.  Keeps a manifest of the processed source files in the build directory and only
+     * delomboks the files that were added or modified since the previous execution, deleting the output
+     * of removed files.  Files that use <code>val</code>, <code>var</code>, <code>@Delegate</code>,
+     * <code>@ExtensionMethod</code> or <code>@SuperBuilder</code> are delombok-ed again along with the changed
+     * files they may depend on: those of their package, and those they import or name, directly or through
+     * any other java file.  Files that use lombok are delombok-ed again along with the
+     * <code>lombok.config</code> files above them.  Everything is processed again
+     * when the classpath, encoding, formatting preferences or the <code>lombok.config</code> files above the
+     * source directory change.
+     */
+    @Parameter(property="lombok.incremental", defaultValue="false", required=true)
+    protected boolean incremental;
+
+    /**
+     * Number of threads used to delombok.  Either a number of threads, or a multiple of the available
+     * processors when suffixed with <code>C</code> (e.g. <code>1C</code>), like Maven's <code>-T</code> option.
+     * With more than one thread, the sources are split into shards of whole packages where possible,
+     * and every shard is delombok-ed concurrently by its own delombok instance.
+     */
+    @Parameter(property="lombok.threads", defaultValue="1", required=true)
+    protected String threads;
+
+    /**
+     * Number of delombok threads shared by all the modules of a build, in the same format as <code>threads</code>.
+     * In a parallel build, modules wait for threads to be available before they delombok, so that
+     * concurrent modules cannot hold more syntax trees in memory than that many threads would; a module
+     * never uses more threads than this.  The first execution of the build sets it for the whole build.  Defaults
+     * to <code>1C</code>, one thread per available processor, which bounds the threads and heap of a parallel
+     * build whatever its <code>-T</code> option.
+     */
+    @Parameter(property="lombok.reactorThreads", defaultValue="1C", required=true)
+    protected String reactorThreads;
+
+    /**
+     * Cache directory.  When set, delombok-ed files are kept in this local, content-addressed store
+     * (e.g. <code>${user.home}/.m2/lombok-cache</code>) and copied from there by any later build with
+     * identical inputs instead of being delombok-ed again.  Entries are keyed by the content of the source
+     * file and of the <code>lombok.config</code> files that apply to it, the lombok version, the names and
+     * sizes of the classpath entries, the encoding and the formatting preferences.  Files that use
+     * <code>val</code>, <code>var</code>, <code>@Delegate</code>, <code>@ExtensionMethod</code> or
+     * <code>@SuperBuilder</code> generate code from other types, so they are always delombok-ed.  The cache
+     * is not used with encodings that do not encode ASCII like ASCII does.
+     */
+    @Parameter(property="lombok.cacheDirectory")
+    protected File cacheDirectory;
+
+    /**
+     * Maximum size of the cache directory, in bytes or with a <code>K</code>, <code>M</code> or
+     * <code>G</code> suffix.  The least recently used entries are evicted when it grows larger.
+     */
+    @Parameter(property="lombok.cacheMaxSize", defaultValue="512M", required=true)
+    protected String cacheMaxSize;
+
+    /**
+     * Prune classpath flag.  Leaves the project dependencies that contain none of the packages referred to
+     * by the lombok sources (through their package, imports, or qualified names) off the classpath of
+     * delombok, so that javac does not have to open and index them.  The dependencies of the kept ones are
+     * kept too, since the supertypes of a class may come from them.  The plugin dependencies and directories
+     * are always kept.  The pruning is approximate: a type the sources never name, from a jar that is not
+     * a dependency of a kept one (e.g. a <code>provided</code> dependency of a kept jar that the project
+     * declares itself), may be left out, in which case delombok cannot resolve it; leave this flag off for
+     * such projects.
+     */
+    @Parameter(property="lombok.pruneClasspath", defaultValue="false", required=true)
+    protected boolean pruneClasspath;
+
+    /**
+     * File where <code>pruneClasspath</code> keeps the packages of every jar, keyed by the path, size and
+     * modification time of the jar, so that later builds only open the jars that are new or changed.  By
+     * default, <code>lombok-classpath.index</code> in the local repository of the build, so that builds
+     * with another local repository keep an index of their own.
+     */
+    @Parameter(property="lombok.classpathIndexFile")
+    protected File classpathIndexFile;
+
+    /**
+     * Write if changed flag.  Only replaces an output file when its delombok-ed content differs from what
+     * is already there, and deletes outputs whose source is gone, so that the compiler sees unchanged
+     * files as up to date and only recompiles what really changed.
+     */
+    @Parameter(property="lombok.writeIfChanged", defaultValue="false", required=true)
+    protected boolean writeIfChanged;
+
+    /**
+     * Pass-through flag.  Copies the source files that do not mention lombok at all to the output directory
+     * as they are, which is what delombok would produce, instead of having delombok parse and print them.
+     * Only applies to encodings that are compatible with ASCII.
+     */
+    @Parameter(property="lombok.passThrough", defaultValue="false", required=true)
+    protected boolean passThrough;
+
+    /**
+     * Maximum number of files delombok-ed at once, or <code>0</code> for no limit.  Every batch is
+     * delombok-ed by a Delombok of its own, so that the syntax trees of a batch can be garbage collected
+     * before the next one is parsed; files of other batches are still found on the sourcepath.  Keeps the
+     * memory needed for very large source trees bounded, at the cost of parsing referenced files again.
+     */
+    @Parameter(property="lombok.batchSize", defaultValue="0", required=true)
+    protected int batchSize;
+
+    /**
+     * Number of delombok-ed files that may wait for the asynchronous writer, or <code>0</code> to write every file
+     * before the next one is printed.  When positive, every delombok session has an asynchronous writer, a thread
+     * of its own that writes its output while javac goes on printing; reading the sources is not overlapped.  It
+     * pays off where the disk is slow, e.g. in network-mounted workspaces.  When
+     * that many files wait, printing waits for the writer.  When delombok fails, the files that still wait are
+     * discarded.
+     */
+    @Parameter(property="lombok.pipelineDepth", defaultValue="0", required=true)
+    protected int pipelineDepth;
+
+    /**
+     * Report flag.  Writes measurements of every execution as JSON to
+     * <code>target/lombok/&lt;goal&gt;-&lt;execution id&gt;-report.json</code>: the duration of every phase in
+     * nanoseconds, file and byte counts, heap usage, and the slowest files.  It does not change how files
+     * are delombok-ed: when no other option makes the plugin process the files one by one, delombok
+     * processes the whole source directory by itself, and the report then lacks the slowest files, the
+     * analyze, print and write times and the counts of unchanged and deleted files.
+     */
+    @Parameter(property="lombok.report", defaultValue="false", required=true)
+    protected boolean report;
+
+    /**
+     * Number of the slowest files listed in the report.
+     */
+    @Parameter(property="lombok.reportSlowestFiles", defaultValue="10", required=true)
+    protected int reportSlowestFiles;
+
+    /**
+     * Up-to-date check flag.  Keeps a fingerprint of the paths, sizes and modification times of the source
+     * and output files, of the files on the classpath and source path (including those below directories,
+     * such as the classes of other modules of the reactor), the plugin and lombok versions, the encoding
+     * and the formatting preferences in the build directory, and skips the goal, without even loading
+     * lombok, when none of them changed since the previous successful execution.  Changes that keep both
+     * the size and the modification time of a file go unnoticed.
+     */
+    @Parameter(property="lombok.upToDateCheck", defaultValue="false", required=true)
+    protected boolean upToDateCheck;
+
+    /**
+     * Daemon flag.  Delomboks in a background JVM that is started on first use and reused by later
+     * builds on the same machine, so that lombok and javac are loaded and compiled by the JIT only once;
+     * every request still parses its classpath anew.  The daemon runs with the <code>javaExecutable</code>,
+     * <code>jvmArgs</code> and <code>maxHeap</code>, and a build with other values, or with another version
+     * of the plugin or of lombok, starts a daemon of its own.  Falls back to delombok-ing in the Maven JVM
+     * if the daemon cannot be reached.
+     */
+    @Parameter(property="lombok.daemon", defaultValue="false", required=true)
+    protected boolean daemon;
+
+    /**
+     * Number of seconds a daemon waits for another request before it exits.
+     */
+    @Parameter(property="lombok.daemonIdleTimeout", defaultValue="1800", required=true)
+    protected int daemonIdleTimeout;
+
+    /**
+     * Directory where the daemons keep their state and log files.
+     */
+    @Parameter(property="lombok.daemonDirectory", defaultValue="${user.home}/.m2/lombok-daemon", required=true)
+    protected File daemonDirectory;
+
+    /**
+     * Fork flag.  Delomboks in a new JVM for every execution, with a heap and options of its own rather than
+     * those of Maven, so that delombok does not compete for Maven's heap with the other plugins of a
+     * parallel build.  Ignored when the daemon is used.
+     */
+    @Parameter(property="lombok.fork", defaultValue="false", required=true)
+    protected boolean fork;
+
+    /**
+     * Options of the forked JVM or daemon, separated by spaces.  The default, the parallel garbage collector, favours
+     * throughput over pause times, which suits a batch job like delombok.
+     */
+    @Parameter(property="lombok.jvmArgs", defaultValue="-XX:+UseParallelGC")
+    protected String jvmArgs;
+
+    /**
+     * Maximum heap of the forked JVM or daemon, e.g. <code>2g</code>; by default, that of the JVM.
+     */
+    @Parameter(property="lombok.maxHeap")
+    protected String maxHeap;
+
+    /**
+     * The java launcher of the forked JVM or daemon.
+     */
+    @Parameter(property="lombok.javaExecutable", defaultValue="${java.home}/bin/java", required=true)
+    protected File javaExecutable;
+
+    /**
+     * Class data sharing flag.  With Java 13 or later, the first forked JVM archives the classes it loaded,
+     * javac's in particular, and later forks with the same JVM and classpath map them instead of loading them.
+     */
+    @Parameter(property="lombok.classDataSharing", defaultValue="true", required=true)
+    protected boolean classDataSharing;
+
+    /**
+     * Directory where forked JVMs exchange requests and results, and keep their class data sharing archives.
+     */
+    @Parameter(property="lombok.forkDirectory", defaultValue="${user.home}/.m2/lombok-fork", required=true)
+    protected File forkDirectory;
+
+    /**
+     * Sources jar, e.g. <code>${project.build.directory}/${project.build.finalName}-sources.jar</code>.  When set,
+     * the delombok-ed sources and resources are written straight into this jar rather than into the output
+     * directory, which is then neither written nor added to the Maven build path, and the jar is attached to
+     * the project with the <code>sourcesJarClassifier</code>, in place of the maven-source-plugin.  Like
+     * that plugin, the jar also holds the files of the other compile (or, for testDelombok, test compile)
+     * source roots of the project; the delombok-ed files take precedence.  The jar is reproducible: its
+     * entries are sorted and all have the time of the <code>project.build.outputTimestamp</code> property,
+     * or 1980-01-01 when it is not set.  The jar is not written when delombok fails, which fails the build.
+     * The incremental, daemon and fork options do not apply, and the delombokAll goal, which would mix main
+     * and test sources, rejects it.
+     */
+    @Parameter(property="lombok.sourcesJar")
+    protected File sourcesJar;
+
+    /**
+     * Classifier of the attached sources jar.
+     */
+    @Parameter(property="lombok.sourcesJarClassifier", defaultValue="sources", required=true)
+    protected String sourcesJarClassifier;
+
+    /**
+     * ABI fingerprint flag.  Hashes the API of every delombok-ed compilation unit, i.e. its declarations without
+     * method bodies or private members, into <code>target/lombok/&lt;goal&gt;-&lt;execution id&gt;.abi</code>, headed
+     * by a hash of the whole output directory that is also set as the <code>abiProperty</code> project property.
+     * Later modules and build scripts can then skip recompiling when only implementations changed.
+     */
+    @Parameter(property="lombok.abiFingerprint", defaultValue="false", required=true)
+    protected boolean abiFingerprint;
+
+    /**
+     * Name of the project property set to the ABI fingerprint; by default <code>lombok.&lt;goal&gt;.abi</code>,
+     * e.g. <code>lombok.delombok.abi</code>.  When a goal delomboks several source sets of the same project,
+     * the fingerprint of each source set but the main one goes into the property suffixed with its id, e.g.
+     * <code>lombok.delombokAll.abi.test</code>.
+     */
+    @Parameter(property="lombok.abiProperty")
+    protected String abiProperty;
+
     /**
      * The Maven project to act upon.
      */
@@ -77,12 +350,21 @@ public abstract class AbstractDelombokMojo extends AbstractMojo {
     @Parameter(property="plugin", required=true, readonly=true)
     protected PluginDescriptor pluginDescriptor;
 
+    @Parameter(defaultValue="${mojoExecution}", required=true, readonly=true)
+    protected MojoExecution mojoExecution;
+
+    @Parameter(defaultValue="${repositorySystemSession}", required=true, readonly=true)
+    protected RepositorySystemSession repositorySession;
+
     /**
      * Build Context for improved Maven-Eclipse integration.
      */
     @Component
     private BuildContext buildContext;
 
+    @Component
+    private MavenProjectHelper projectHelper;
+
     protected abstract String getGoalDescription ();
 
     protected abstract File getOutputDirectory();
@@ -93,6 +375,50 @@ public abstract class AbstractDelombokMojo extends AbstractMojo {
 
     protected abstract void addSourceRoot(String path);
 
+    /**
+     * The source sets to delombok together, in a single javac session.  By default, the source directory
+     * of this goal.
+     */
+    List<SourceSet> getSourceSets () {
+        return Collections.singletonList(new SourceSet("main", getSourceDirectory(), getOutputDirectory()));
+    }
+
+    /**
+     * The artifacts delombok resolves types from.  By default, the resolved dependencies of the project.
+     */
+    Collection<Artifact> getDependencies () {
+        return project.getArtifacts();
+    }
+
+    /**
+     * The project a source set belongs to.  By default, the project of this goal.
+     */
+    MavenProject getProject (final SourceSet sourceSet) {
+        return project;
+    }
+
+    /**
+     * The source roots whose files go into the sources jar along with the delombok-ed ones.  By default, the
+     * compile source roots of the project.
+     */
+    List<String> getSourcesJarRoots () {
+        return project.getCompileSourceRoots();
+    }
+
+    /**
+     * Whether the delombok-ed files of this goal can go into a single sources jar.  By default, they can.
+     */
+    boolean supportsSourcesJar () {
+        return true;
+    }
+
+    /**
+     * Adds the output directory of a source set to the Maven build path.
+     */
+    void addSourceRoot (final SourceSet sourceSet, final String path) {
+        addSourceRoot(path);
+    }
+
     @Override
     public void execute() throws MojoExecutionException {
         final Log logger = getLog();
@@ -100,23 +426,73 @@ public abstract class AbstractDelombokMojo extends AbstractMojo {
 
         final String goal = getGoalDescription();
         logger.debug("Starting " + goal);
-        final File outputDirectory = getOutputDirectory();
-        logger.debug("outputDirectory: " + outputDirectory);
-        final File sourceDirectory = getSourceDirectory();
-        logger.debug("sourceDirectory: " + sourceDirectory);
+        if (null != this.sourcesJar && !supportsSourcesJar()) {
+            logger.error("The sourcesJar parameter is invalid for " + goal + "; Please check!");
+            throw new MojoExecutionException(goal + " does not support a sources jar; use the delombok and testDelombok goals.");
+        }
+        final List<SourceSet> sourceSets = new ArrayList<SourceSet>();
+        for (final SourceSet sourceSet : getSourceSets()) {
+            logger.debug("outputDirectory: " + sourceSet.outputDirectory);
+            logger.debug("sourceDirectory: " + sourceSet.sourceDirectory);
+            if (sourceSet.sourceDirectory.exists()) {
+                sourceSets.add(sourceSet);
+            }
+        }
         final String sourcePath = getSourcePath();
         logger.debug("sourcePath: " + sourcePath);
 
         if (this.skip) {
             logger.info("Skipping " + goal);
-        } else if (sourceDirectory.exists()) {
+        } else if (!sourceSets.isEmpty()) {
+            final SourceScanner scanner;
+            try {
+                scanner = new SourceScanner(this.includes, this.excludes);
+            } catch (final IllegalArgumentException e) {
+                logger.error("The includes or excludes parameter is invalid; Please check!", e);
+                throw new MojoExecutionException("Invalid includes or excludes: " + e.getMessage(), e);
+            }
+            final long executeStart = System.nanoTime();
+            final long heapBefore = DelombokReport.getUsedHeap();
+            final DelombokReport report = new DelombokReport();
+            report.put("goal", mojoExecution.getGoal());
+            report.put("executionId", mojoExecution.getExecutionId());
+            report.put("project", project.getGroupId() + ':' + project.getArtifactId() + ':' + project.getVersion());
+            final SimpleDateFormat timestamp = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+            timestamp.setTimeZone(TimeZone.getTimeZone("UTC"));
+            report.put("timestamp", timestamp.format(new Date()));
+
+            // Nothing to do, not even loading lombok, if no input changed since the previous execution...
+            final File fingerprintFile = getStateFile(".fingerprint");
+            if (skipIfUpToDate(sourceSets, scanner, sourcePath, fingerprintFile, report)) {
+                return;
+            }
+
             // Build a classPath for delombok...
+            long start = System.nanoTime();
+            Collection<Artifact> dependencies = getDependencies();
+            if (this.pruneClasspath) {
+                try {
+                    dependencies = pruneClasspath(sourceSets, scanner, dependencies);
+                } catch (final IOException e) {
+                    logger.error("Unable to scan the sources!", e);
+                    throw new MojoExecutionException("I/O problem while pruning the classpath", e);
+                }
+            }
+            final List<File> classPathFiles = new ArrayList<File>();
+            for (final Artifact artifact : dependencies) {
+                classPathFiles.add(artifact.getFile());
+            }
+            for (final Artifact artifact : pluginArtifacts) {
+                classPathFiles.add(artifact.getFile());
+            }
             final StringBuilder classPathBuilder = new StringBuilder();
-            for (final Object artifact : project.getArtifacts()) {
-                classPathBuilder.append(((Artifact)artifact).getFile()).append(File.pathSeparatorChar);
+            for (final File file : classPathFiles) {
+                classPathBuilder.append(file).append(File.pathSeparatorChar);
             }
+            final List<File> daemonClassPath = new ArrayList<File>();
+            daemonClassPath.add(pluginDescriptor.getPluginArtifact().getFile());
             for (final Artifact artifact : pluginArtifacts) {
-                classPathBuilder.append(artifact.getFile()).append(File.pathSeparatorChar);
+                daemonClassPath.add(artifact.getFile());
             }
             // delombok needs tools.jar (prior to Java 9)...
             if (!SystemUtils.isJavaVersionAtLeast(JavaVersion.JAVA_9)) {
@@ -124,6 +500,7 @@ public abstract class AbstractDelombokMojo extends AbstractMojo {
                 final File toolsJar = new File (javaHome,
                     ".." + File.separatorChar + "lib" + File.separatorChar + "tools.jar");
                 if (toolsJar.exists()) {
+                    daemonClassPath.add(toolsJar);
                     try {
                         pluginDescriptor.getClassRealm().addURL(toolsJar.toURI().toURL());
                     } catch (final IOException e) {
@@ -135,54 +512,124 @@ public abstract class AbstractDelombokMojo extends AbstractMojo {
             }
             final String classPath = classPathBuilder.toString();
             logger.debug("classpath: " + classPath);
+            report.addPhase("classpath", start);
+            report.put("classpath", "projectDependencies", getDependencies().size());
+            report.put("classpath", "entries", classPathFiles.size());
+            final List<String> formatOptions = getFormatOptions();
+            final int threadCount;
+            try {
+                threadCount = ShardedDelombok.parseThreads(this.threads);
+            } catch (final IllegalArgumentException e) {
+                logger.error("The threads parameter is invalid; Please check!", e);
+                throw new MojoExecutionException("Invalid threads: " + this.threads, e);
+            }
+            if (this.pipelineDepth < 0) {
+                logger.error("The pipelineDepth parameter is invalid; Please check!");
+                throw new MojoExecutionException("Invalid pipelineDepth: " + this.pipelineDepth);
+            }
+            final ReactorCoordinator coordinator;
             try {
-                final Delombok delombok = new Delombok();
-                delombok.setVerbose(this.verbose);
-                delombok.setClasspath(classPath);
+                coordinator = ReactorCoordinator.get(this.repositorySession, ShardedDelombok.parseThreads(this.reactorThreads));
+            } catch (final IllegalArgumentException e) {
+                logger.error("The reactorThreads parameter is invalid; Please check!", e);
+                throw new MojoExecutionException("Invalid reactorThreads: " + this.reactorThreads, e);
+            }
+            try {
+                final String lombokVersion = setUpDelombok(formatOptions, report);
 
-                if (StringUtils.isNotBlank(this.encoding)) {
-                    try {
-                        delombok.setCharset(this.encoding);
-                    } catch (final UnsupportedCharsetException e) {
-                        logger.error("The encoding parameter is invalid; Please check!", e);
-                        throw new MojoExecutionException("Unknown charset: " + this.encoding, e);
-                    }
-                } else {
-                    logger.warn("No encoding specified; using default: " + Charset.defaultCharset());
+                final DelombokCache cache = openCache(classPathFiles, lombokVersion, formatOptions);
+
+                // Files that are not handed to a writer go to the first output directory...
+                final DelombokSettings settings = new DelombokSettings(this.verbose, classPath, sourcePath,
+                    StringUtils.isNotBlank(this.encoding) ? this.encoding : null, formatOptions,
+                    sourceSets.get(0).outputDirectory, this.writeIfChanged, this.pipelineDepth);
+                if (null != this.sourcesJar && (this.incremental || this.daemon || this.fork)) {
+                    logger.warn("The incremental, daemon and fork options do not apply to a sources jar; ignoring them.");
                 }
+                final boolean incremental = this.incremental && null == this.sourcesJar;
+                final DelombokDaemonClient daemonClient = this.daemon && null == this.sourcesJar
+                    ? new DelombokDaemonClient(this.daemonDirectory, this.javaExecutable, getForkJvmArgs(), daemonClassPath,
+                        this.daemonIdleTimeout)
+                    : null;
+                final DelombokFork forker = this.fork && null == daemonClient && null == this.sourcesJar
+                    ? new DelombokFork(this.javaExecutable, getForkJvmArgs(), daemonClassPath, this.forkDirectory, this.classDataSharing)
+                    : null;
+                try {
+                    boolean hasDelta = false;
+                    for (final SourceSet sourceSet : sourceSets) {
+                        hasDelta |= buildContext.hasDelta(sourceSet.sourceDirectory);
+                    }
+                    if (hasDelta) {
+                        start = System.nanoTime();
+                        final SourcesJar jar = openSourcesJar(sourceSets);
+                        final OutputUpdater updater = null != jar ? new OutputUpdater(jar) : new OutputUpdater(this.writeIfChanged);
+                        final boolean perFile = needsPerFileSession(jar, incremental, threadCount, cache, daemonClient, forker,
+                            sourceSets, scanner);
+                        report.put("configuration", "sourceSets", sourceSets.size());
+                        report.put("configuration", "incremental", incremental);
+                        report.put("configuration", "threads", threadCount);
+                        report.put("configuration", "reactorThreads", coordinator.getWorkerCount());
+                        report.put("configuration", "batchSize", this.batchSize);
+                        report.put("configuration", "cache", null != cache);
+                        report.put("configuration", "daemon", null != daemonClient);
+                        report.put("configuration", "fork", null != forker);
+                        report.put("configuration", "writeIfChanged", this.writeIfChanged);
+                        report.put("configuration", "pipelineDepth", this.pipelineDepth);
+                        report.put("configuration", "pruneClasspath", this.pruneClasspath);
+                        report.put("configuration", "sourcesJar", null != jar);
+                        final boolean success;
+                        try {
+                            if (incremental) {
+                                final String fingerprint = Hashes.hash(classPath, sourcePath, this.encoding, formatOptions);
+                                success = delombokIncrementally(settings, coordinator, threadCount, cache, daemonClient, forker, updater, report,
+                                    sourceSets, scanner, fingerprint);
+                            } else if (perFile) {
+                                success = delombokPerFile(settings, coordinator, threadCount, cache, daemonClient, forker, updater, report,
+                                    sourceSets, scanner, null != jar);
+                            } else {
+                                success = delombokDirectory(settings, coordinator, report, sourceSets.get(0));
+                            }
+                            if (null != jar) {
+                                commitSourcesJar(jar, sourceSets, success);
+                            }
+                        } finally {
+                            if (null != jar) {
+                                jar.abort();
+                            }
+                        }
+                        logger.info(goal + " complete in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms"
+                            + (perFile ? "; " + updater + '.' : "."));
 
-                if (null != formatPreferences && !formatPreferences.isEmpty()) {
-                    try {
-                        // Construct a list array just like the command-line option...
-                        final List<String> formatOptions = new ArrayList<String>(formatPreferences.size());
-                        for (final Map.Entry<String, String> entry : formatPreferences.entrySet()) {
-                            final String key = entry.getKey();
-                            // "pretty" is an exception -- it has no value...
-                            formatOptions.add( "pretty".equalsIgnoreCase(key) ? key : (key + ':' + entry.getValue()) );
+                        publishAbi(sourceSets, report);
+
+                        if (this.report) {
+                            writeReport(report, updater, perFile, executeStart, heapBefore);
                         }
-                        delombok.setFormatPreferences(delombok.formatOptionsToMap(formatOptions));
-                    } catch (final Exception e) {
-                        logger.error("The formatPreferences parameter is invalid; Please check!", e);
-                        throw new MojoExecutionException("Invalid formatPreferences: " + this.formatPreferences, e);
-                    }
-                }
 
-                try {
-                    delombok.setOutput(outputDirectory);
-                    delombok.setSourcepath(getSourcePath());
-                    delombok.addDirectory(sourceDirectory);
-                    if (buildContext.hasDelta(sourceDirectory)) {
-                        delombok.delombok();
-                        logger.info(goal + " complete.");
-
-                        if (this.addOutputDirectory) {
-                            // adding generated sources to Maven project
-                            addSourceRoot(outputDirectory.getCanonicalPath());
-                            // Notify build context about a file created, updated or deleted...
-                            buildContext.refresh(outputDirectory);
+                        if (this.addOutputDirectory && null == jar) {
+                            for (final SourceSet sourceSet : sourceSets) {
+                                // adding generated sources to Maven project
+                                addSourceRoot(sourceSet, sourceSet.outputDirectory.getCanonicalPath());
+                                // Notify build context about a file created, updated or deleted...
+                                buildContext.refresh(sourceSet.outputDirectory);
+                            }
+                        }
+
+                        if (this.upToDateCheck && !success) {
+                            logger.warn("Delombok did not complete; not recording the fingerprint of the sources.");
+                        } else if (this.upToDateCheck) {
+                            final File parent = fingerprintFile.getParentFile();
+                            if (!parent.isDirectory() && !parent.mkdirs()) {
+                                throw new IOException("Unable to create directory " + parent);
+                            }
+                            Files.write(fingerprintFile.toPath(), getFingerprint(sourceSets, scanner, sourcePath).getBytes(DelombokDaemon.UTF_8));
                         }
                     } else {
                         logger.info(goal + " skipped; No deltas detected.");
+                        if (null != this.sourcesJar) {
+                            attachSourcesJar();
+                        }
+                        publishAbi(sourceSets, report);
                     }
                 } catch (final IOException e) {
                     logger.error("Unable to delombok!", e);
@@ -203,4 +650,714 @@ public abstract class AbstractDelombokMojo extends AbstractMojo {
             logger.warn("Skipping " + goal + "; no source to process.");
         }
     }
+
+    /**
+     * Loads lombok, records its version and setup time, and checks the encoding and format preferences.
+     *
+     * @return the version of lombok.
+     */
+    private String setUpDelombok (final List<String> formatOptions, final DelombokReport report) throws ClassNotFoundException,
+            IllegalAccessException, InstantiationException, InvocationTargetException, MojoExecutionException, NoSuchMethodException {
+        final Log logger = getLog();
+        // Lease a class loader of its own, as other modules of a parallel build may be delombok-ing...
+        final String lombokVersion;
+        final ClassLoader setupClassLoader = Delombok.acquireShadowClassLoader();
+        try {
+            final Delombok delombok = new Delombok(setupClassLoader);
+            lombokVersion = delombok.getLombokVersion();
+            report.put("lombokVersion", lombokVersion);
+            report.add("phaseNanos", "setup", delombok.getSetupNanos());
+            logger.debug(String.format("Delombok setup (lombok %s) took %.3f ms; %s", lombokVersion,
+                delombok.getSetupNanos() / 1e6, delombok.isWarm() ? "warm, reusing cached class loader and method handles." : "cold."));
+
+            if (StringUtils.isNotBlank(this.encoding)) {
+                try {
+                    delombok.setCharset(this.encoding);
+                } catch (final UnsupportedCharsetException e) {
+                    logger.error("The encoding parameter is invalid; Please check!", e);
+                    throw new MojoExecutionException("Unknown charset: " + this.encoding, e);
+                }
+            } else {
+                logger.warn("No encoding specified; using default: " + Charset.defaultCharset());
+            }
+
+            if (!formatOptions.isEmpty()) {
+                try {
+                    delombok.formatOptionsToMap(formatOptions);
+                } catch (final Exception e) {
+                    logger.error("The formatPreferences parameter is invalid; Please check!", e);
+                    throw new MojoExecutionException("Invalid formatPreferences: " + this.formatPreferences, e);
+                }
+            }
+        } finally {
+            Delombok.releaseShadowClassLoader(setupClassLoader);
+        }
+        return lombokVersion;
+    }
+
+    /**
+     * Opens the cache of delombok-ed files.
+     *
+     * @return the cache, or <code>null</code> if there is no cache directory.
+     */
+    private DelombokCache openCache (final List<File> classPathFiles, final String lombokVersion, final List<String> formatOptions)
+            throws MojoExecutionException {
+        if (null == this.cacheDirectory) {
+            return null;
+        }
+        final long maxSize;
+        try {
+            maxSize = DelombokCache.parseSize(this.cacheMaxSize);
+        } catch (final NumberFormatException e) {
+            getLog().error("The cacheMaxSize parameter is invalid; Please check!", e);
+            throw new MojoExecutionException("Invalid cacheMaxSize: " + this.cacheMaxSize, e);
+        }
+        // Unlike the classpath itself, this fingerprint must not depend on the location of the workspace...
+        final StringBuilder classPathEntries = new StringBuilder();
+        for (final File file : classPathFiles) {
+            classPathEntries.append(file.getName()).append(':').append(file.isFile() ? file.length() : -1L).append(';');
+        }
+        return new DelombokCache(this.cacheDirectory, maxSize, Hashes.hash(lombokVersion, classPathEntries, this.encoding, formatOptions));
+    }
+
+    /**
+     * Completes the report with the figures of the writer and of the heap, and writes it.
+     *
+     * @param perFile whether the files were delombok-ed one by one, so that the writer saw every one of them.
+     */
+    private void writeReport (final DelombokReport report, final OutputUpdater updater, final boolean perFile,
+            final long executeStart, final long heapBefore) throws IOException {
+        if (perFile) {
+            report.add("phaseNanos", "analyze", updater.getAnalyzeNanos());
+            report.add("phaseNanos", "print", updater.getPrintNanos());
+            report.add("phaseNanos", "write", updater.getWriteNanos());
+            report.add("phaseNanos", "backpressure", updater.getBackpressureNanos());
+            report.put("files", "written", updater.getWrittenCount());
+            report.put("files", "unchanged", updater.getUnchangedCount());
+            report.put("files", "deleted", updater.getDeletedCount());
+            report.put("bytes", "out", updater.getByteCount());
+        }
+        report.addPhase("total", executeStart);
+        final long heapAfter = DelombokReport.getUsedHeap();
+        report.put("heap", "before", heapBefore);
+        report.put("heap", "after", heapAfter);
+        report.put("heap", "delta", heapAfter - heapBefore);
+        report.put("slowestFiles", DelombokReport.slowest(updater.getFileNanos(), this.reportSlowestFiles,
+            project.getBasedir()));
+        final File reportFile = getStateFile("-report.json");
+        report.write(reportFile);
+        getLog().info("Delombok report written to " + reportFile);
+    }
+
+    /**
+     * Checks whether no input changed since the previous execution, in which case that execution's output is
+     * published again instead of being produced.  Otherwise the fingerprint of the previous execution is removed,
+     * so that a failed execution does not leave it behind.
+     *
+     * @return <code>true</code> if the execution can be skipped.
+     */
+    private boolean skipIfUpToDate (final List<SourceSet> sourceSets, final SourceScanner scanner, final String sourcePath,
+            final File fingerprintFile, final DelombokReport report) throws MojoExecutionException {
+        final Log logger = getLog();
+        try {
+            if (this.upToDateCheck) {
+                final String fingerprint = getFingerprint(sourceSets, scanner, sourcePath);
+                if (fingerprintFile.isFile()
+                    && fingerprint.equals(new String(Files.readAllBytes(fingerprintFile.toPath()), DelombokDaemon.UTF_8))) {
+                    logger.info(getGoalDescription() + " skipped; sources, outputs, classpath and configuration are unchanged.");
+                    if (null != this.sourcesJar) {
+                        attachSourcesJar();
+                    } else if (this.addOutputDirectory) {
+                        for (final SourceSet sourceSet : sourceSets) {
+                            addSourceRoot(sourceSet, sourceSet.outputDirectory.getCanonicalPath());
+                        }
+                    }
+                    publishAbi(sourceSets, report);
+                    return true;
+                }
+            }
+            Files.deleteIfExists(fingerprintFile.toPath());
+            return false;
+        } catch (final IOException e) {
+            logger.error("Unable to check whether the sources changed!", e);
+            throw new MojoExecutionException("I/O problem during the up-to-date check", e);
+        }
+    }
+
+    /**
+     * Indicates whether the files have to be delombok-ed one by one.  Otherwise, a single Delombok in the Maven
+     * JVM processes the only source directory by itself, and writes every file of it to the output directory.
+     */
+    private boolean needsPerFileSession (final SourcesJar jar, final boolean incremental, final int threadCount,
+            final DelombokCache cache, final DelombokDaemonClient daemonClient, final DelombokFork forker,
+            final List<SourceSet> sourceSets, final SourceScanner scanner) {
+        // Delombok only processes a whole directory, and copies every other file of it as it is...
+        final boolean wholeDirectory = sourceSets.size() == 1 && !incremental && !scanner.isFiltering() && !this.passThrough;
+        final boolean singleSession = threadCount == 1 && this.batchSize == 0 && null == daemonClient && null == forker;
+        final boolean plainOutput = null == jar && null == cache && !this.writeIfChanged && this.pipelineDepth == 0;
+        return !(wholeDirectory && singleSession && plainOutput);
+    }
+
+    /**
+     * Delomboks the files of every source set one by one, and copies the other files as they are.
+     *
+     * @param jar whether the files go into a sources jar rather than into the output directories.
+     * @return <code>true</code> if delombok completed successfully.
+     */
+    private boolean delombokPerFile (final DelombokSettings settings, final ReactorCoordinator coordinator, final int threadCount,
+            final DelombokCache cache, final DelombokDaemonClient daemonClient, final DelombokFork forker, final OutputUpdater updater,
+            final DelombokReport report, final List<SourceSet> sourceSets, final SourceScanner scanner, final boolean jar)
+            throws ClassNotFoundException, IllegalAccessException, InstantiationException, InvocationTargetException, IOException,
+            NoSuchMethodException {
+        final Log logger = getLog();
+        final List<SourceFile> sources = new ArrayList<SourceFile>();
+        for (final SourceSet sourceSet : sourceSets) {
+            final List<String> paths = scanner.scan(sourceSet.sourceDirectory);
+            for (final String path : paths) {
+                if (path.endsWith(".java")) {
+                    sources.add(sourceSet.file(path));
+                } else {
+                    copyResource(sourceSet.file(path), updater, report);
+                }
+            }
+            if (this.writeIfChanged && !jar) {
+                // Without rewriting everything, outputs of removed sources would linger...
+                final Set<String> expected = new HashSet<String>(paths);
+                for (final String path : SourceScanner.ALL.scan(sourceSet.outputDirectory)) {
+                    if (!expected.contains(path)) {
+                        logger.debug("Deleting stale output: " + path);
+                        updater.delete(new File(sourceSet.outputDirectory, path));
+                    }
+                }
+            }
+        }
+        report.add("files", "sources", sources.size());
+        return delombokFiles(settings, coordinator, threadCount, cache, daemonClient, forker, updater, report, sources);
+    }
+
+    /**
+     * Has a single Delombok process the source directory of a source set by itself.
+     *
+     * @return <code>true</code> if delombok completed successfully.
+     */
+    private boolean delombokDirectory (final DelombokSettings settings, final ReactorCoordinator coordinator,
+            final DelombokReport report, final SourceSet sourceSet) throws ClassNotFoundException, IllegalAccessException,
+            InstantiationException, InvocationTargetException, IOException, NoSuchMethodException {
+        final boolean success;
+        final int workers = acquireWorkers(coordinator, 1, report);
+        final ClassLoader shadowClassLoader = Delombok.acquireShadowClassLoader();
+        try {
+            final long delombokStart = System.nanoTime();
+            final Delombok delombok = new Delombok(shadowClassLoader);
+            settings.applyTo(delombok);
+            delombok.addDirectory(sourceSet.sourceDirectory);
+            success = delombok.delombok();
+            report.addPhase("delombok", delombokStart);
+        } finally {
+            Delombok.releaseShadowClassLoader(shadowClassLoader);
+            coordinator.release(workers);
+        }
+        if (this.report) {
+            // Delombok processed the directory by itself; only its inputs and outputs can be counted...
+            countFiles(report, sourceSet.sourceDirectory, "sources", "in");
+            countFiles(report, sourceSet.outputDirectory, "written", "out");
+        }
+        return success;
+    }
+
+    /**
+     * Opens the sources jar the output goes into.
+     *
+     * @return the jar, or <code>null</code> if the output goes into the output directories.
+     */
+    private SourcesJar openSourcesJar (final List<SourceSet> sourceSets) throws MojoExecutionException {
+        if (null == this.sourcesJar) {
+            return null;
+        }
+        final List<File> outputDirectories = new ArrayList<File>();
+        for (final SourceSet sourceSet : sourceSets) {
+            outputDirectories.add(sourceSet.outputDirectory);
+        }
+        final long time;
+        try {
+            time = SourcesJar.parseTimestamp(project.getProperties().getProperty("project.build.outputTimestamp"));
+        } catch (final IllegalArgumentException e) {
+            getLog().error("The project.build.outputTimestamp property is invalid; Please check!", e);
+            throw new MojoExecutionException("Invalid project.build.outputTimestamp: " + e.getMessage(), e);
+        }
+        return new SourcesJar(this.sourcesJar, outputDirectories, time);
+    }
+
+    /**
+     * Completes the sources jar with the other source roots and attaches it to the project, unless delombok failed.
+     */
+    private void commitSourcesJar (final SourcesJar jar, final List<SourceSet> sourceSets, final boolean success)
+            throws IOException, MojoExecutionException {
+        if (!success) {
+            getLog().error("Delombok did not complete; Not writing " + jar.getFile() + '!');
+            throw new MojoExecutionException("Delombok failed; the sources jar was not written");
+        }
+        putSourceRoots(jar, sourceSets);
+        jar.commit();
+        getLog().info("Wrote " + jar.getEntryCount() + " files to " + jar.getFile());
+        attachSourcesJar();
+    }
+
+    /**
+     * Fingerprints the API of the output of every source set, and sets it as a property of its project.
+     */
+    private void publishAbi (final List<SourceSet> sourceSets, final DelombokReport report) throws IOException {
+        if (!this.abiFingerprint) {
+            return;
+        }
+        if (null != this.sourcesJar) {
+            getLog().warn("No ABI fingerprint without output directory; remove the sourcesJar parameter to get one.");
+            return;
+        }
+        final long start = System.nanoTime();
+        final Charset charset = StringUtils.isNotBlank(this.encoding) ? Charset.forName(this.encoding) : Charset.defaultCharset();
+        final String baseProperty = StringUtils.isNotBlank(this.abiProperty)
+            ? this.abiProperty
+            : "lombok." + mojoExecution.getGoal() + ".abi";
+        // Source sets that share a project, such as the test sources of delombokAll, each need their own property...
+        final Set<MavenProject> projects = new HashSet<MavenProject>();
+        final Set<MavenProject> sharedProjects = new HashSet<MavenProject>();
+        for (final SourceSet sourceSet : sourceSets) {
+            if (!projects.add(getProject(sourceSet))) {
+                sharedProjects.add(getProject(sourceSet));
+            }
+        }
+        for (final SourceSet sourceSet : sourceSets) {
+            final String property = sharedProjects.contains(getProject(sourceSet)) && !"main".equals(sourceSet.id)
+                ? baseProperty + '.' + sourceSet.id
+                : baseProperty;
+            final File abiFile = getStateFile(1 == sourceSets.size() ? ".abi" : '-' + sourceSet.id + ".abi");
+            final AbiFingerprint previous = AbiFingerprint.read(abiFile);
+            final AbiFingerprint current = AbiFingerprint.scan(sourceSet.outputDirectory, charset, previous);
+            current.write(abiFile);
+            getProject(sourceSet).getProperties().setProperty(property, current.getModuleHash());
+            if (null != previous) {
+                getLog().info("API of " + sourceSet.outputDirectory + (previous.getModuleHash().equals(current.getModuleHash())
+                    ? " unchanged" : " changed") + "; " + property + '=' + current.getModuleHash());
+            } else {
+                getLog().info("API of " + sourceSet.outputDirectory + " fingerprinted; " + property + '=' + current.getModuleHash());
+            }
+        }
+        report.addPhase("abi", start);
+    }
+
+    /**
+     * Puts the files of the other source roots into the sources jar, as the maven-source-plugin would; the
+     * delombok-ed files take precedence over files of the same name.
+     */
+    private void putSourceRoots (final SourcesJar jar, final List<SourceSet> sourceSets) throws IOException {
+        final Set<File> excluded = new HashSet<File>();
+        for (final SourceSet sourceSet : sourceSets) {
+            excluded.add(sourceSet.sourceDirectory.getCanonicalFile());
+            excluded.add(sourceSet.outputDirectory.getCanonicalFile());
+        }
+        for (final String root : getSourcesJarRoots()) {
+            final File directory = new File(root);
+            if (directory.isDirectory() && !excluded.contains(directory.getCanonicalFile())) {
+                final int count = jar.putDirectory(directory);
+                getLog().debug("Added " + count + " files of " + directory + " to the sources jar.");
+            }
+        }
+    }
+
+    /**
+     * Attaches the sources jar to the project, if it exists.
+     */
+    private void attachSourcesJar () {
+        if (this.sourcesJar.isFile()) {
+            projectHelper.attachArtifact(project, "jar", this.sourcesJarClassifier, this.sourcesJar);
+        } else {
+            getLog().warn("Not attaching " + this.sourcesJar + "; it does not exist.");
+        }
+    }
+
+    /**
+     * Fingerprints everything the output of this goal depends on, as cheaply as possible: files by their
+     * path, size and modification time, the plugin and its dependencies by their id, and the configuration.
+     * The classpath is taken before pruning, since pruning only depends on the sources.
+     */
+    private String getFingerprint (final List<SourceSet> sourceSets, final SourceScanner scanner, final String sourcePath)
+            throws IOException {
+        final StringBuilder inputs = new StringBuilder();
+        inputs.append(pluginDescriptor.getId()).append(';');
+        appendFile(inputs, pluginDescriptor.getPluginArtifact().getFile());
+        for (final Artifact artifact : pluginArtifacts) {
+            inputs.append(artifact.getId()).append(';');
+            appendFile(inputs, artifact.getFile());
+        }
+        inputs.append('\n');
+        for (final Artifact artifact : getDependencies()) {
+            appendTree(inputs, artifact.getFile());
+        }
+        inputs.append('\n');
+        // Sibling modules of the reactor are on the source path as directories...
+        if (StringUtils.isNotBlank(sourcePath)) {
+            for (final String entry : StringUtils.split(sourcePath, File.pathSeparator)) {
+                appendTree(inputs, new File(entry));
+            }
+        }
+        inputs.append('\n');
+        if (null != this.sourcesJar) {
+            appendFile(inputs, this.sourcesJar);
+            inputs.append(this.sourcesJarClassifier).append('\n');
+        }
+        for (final SourceSet sourceSet : sourceSets) {
+            for (final File config : DependencyGraph.findInheritedConfigs(sourceSet.sourceDirectory)) {
+                appendFile(inputs, config);
+            }
+            inputs.append('\n');
+            for (final File directory : new File[] { sourceSet.sourceDirectory, sourceSet.outputDirectory }) {
+                inputs.append(directory.getAbsolutePath()).append('\n');
+                final SourceScanner directoryScanner = directory == sourceSet.sourceDirectory ? scanner : SourceScanner.ALL;
+                for (final String path : directoryScanner.scan(directory)) {
+                    appendFile(inputs, new File(directory, path));
+                }
+                inputs.append('\n');
+            }
+        }
+        return Hashes.hash(inputs, sourcePath, this.encoding, getFormatOptions());
+    }
+
+    private static void appendFile (final StringBuilder inputs, final File file) {
+        if (null != file) {
+            inputs.append(file.getAbsolutePath()).append('|').append(file.length()).append('|').append(file.lastModified());
+        }
+        inputs.append(';');
+    }
+
+    /**
+     * Appends a file, or every file below a directory, such as the classes of a module of the reactor.
+     */
+    private static void appendTree (final StringBuilder inputs, final File file) throws IOException {
+        if (null != file && file.isDirectory()) {
+            inputs.append(file.getAbsolutePath()).append('{');
+            for (final String path : SourceScanner.ALL.scan(file)) {
+                appendFile(inputs, new File(file, path));
+            }
+            inputs.append('}');
+        } else {
+            appendFile(inputs, file);
+        }
+    }
+
+    /**
+     * Constructs a list of format options just like the command-line option.
+     */
+    private List<String> getFormatOptions () {
+        final List<String> formatOptions = new ArrayList<String>();
+        if (null != formatPreferences) {
+            for (final Map.Entry<String, String> entry : formatPreferences.entrySet()) {
+                final String key = entry.getKey();
+                // "pretty" is an exception -- it has no value...
+                formatOptions.add( "pretty".equalsIgnoreCase(key) ? key : (key + ':' + entry.getValue()) );
+            }
+        }
+        return formatOptions;
+    }
+
+    /**
+     * Location of a file that keeps state between executions of this goal.
+     */
+    protected File getStateFile (final String extension) {
+        return new File(project.getBuild().getDirectory(),
+            "lombok" + File.separatorChar + mojoExecution.getGoal() + '-' + mojoExecution.getExecutionId() + extension);
+    }
+
+    /**
+     * The options of the forked JVM or daemon.
+     */
+    private List<String> getForkJvmArgs () {
+        final List<String> args = new ArrayList<String>();
+        if (StringUtils.isNotBlank(this.maxHeap)) {
+            args.add("-Xmx" + this.maxHeap.trim());
+        }
+        if (StringUtils.isNotBlank(this.jvmArgs)) {
+            Collections.addAll(args, StringUtils.split(this.jvmArgs));
+        }
+        return args;
+    }
+
+    /**
+     * Delomboks only the files that changed since the previous execution, as recorded by the manifest
+     * of every source set.
+     *
+     * @param fingerprint the fingerprint of the configuration, to which the output directory of each source set is added.
+     */
+    private boolean delombokIncrementally (final DelombokSettings settings, final ReactorCoordinator coordinator, final int threadCount,
+            final DelombokCache cache, final DelombokDaemonClient daemonClient, final DelombokFork forker, final OutputUpdater updater,
+            final DelombokReport report, final List<SourceSet> sourceSets, final SourceScanner scanner, final String fingerprint) throws ClassNotFoundException,
+            IllegalAccessException, InstantiationException, InvocationTargetException, IOException, NoSuchMethodException {
+        final Log logger = getLog();
+        final Map<File, DelombokManifest> manifests = new LinkedHashMap<File, DelombokManifest>();
+        final List<SourceFile> sources = new ArrayList<SourceFile>();
+        final DependencyGraph graph = new DependencyGraph();
+        final boolean detectLombok = LombokDetector.supports(null != settings.encoding ? Charset.forName(settings.encoding) : Charset.defaultCharset());
+        int fileCount = 0;
+        for (final SourceSet sourceSet : sourceSets) {
+            final File outputDirectory = sourceSet.outputDirectory;
+            final File manifestFile = getStateFile(1 == sourceSets.size() ? ".manifest" : '-' + sourceSet.id + ".manifest");
+            final StringBuilder inheritedConfigs = new StringBuilder();
+            for (final File config : DependencyGraph.findInheritedConfigs(sourceSet.sourceDirectory)) {
+                inheritedConfigs.append(config.getAbsolutePath()).append('|').append(Hashes.hash(config)).append(';');
+            }
+            final String sourceSetFingerprint = Hashes.hash(fingerprint, outputDirectory.getAbsolutePath(), inheritedConfigs);
+            final long start = System.nanoTime();
+            final DelombokManifest previous = outputDirectory.isDirectory() ? DelombokManifest.read(manifestFile) : null;
+            final DelombokManifest current = DelombokManifest.scan(sourceSet.sourceDirectory, scanner, sourceSetFingerprint, previous,
+                detectLombok);
+            report.addPhase("scan", start);
+            if (null != previous && !sourceSetFingerprint.equals(previous.getFingerprint())) {
+                logger.info("Classpath or configuration changed; delombok-ing all files of " + sourceSet.sourceDirectory + '.');
+            }
+
+            for (final String path : current.getRemovedPaths(previous)) {
+                graph.change(sourceSet.file(path));
+                final File output = new File(outputDirectory, path);
+                if (output.isFile()) {
+                    logger.debug("Deleting stale output: " + output);
+                    updater.delete(output);
+                }
+            }
+
+            for (final String path : current.getChangedPaths(previous)) {
+                graph.change(sourceSet.file(path));
+                if (path.endsWith(".java")) {
+                    sources.add(sourceSet.file(path));
+                } else {
+                    copyResource(sourceSet.file(path), updater, report);
+                }
+            }
+            fileCount += current.getEntries().size();
+            manifests.put(manifestFile, current);
+            graph.add(sourceSet, current);
+        }
+        final long start = System.nanoTime();
+        final Set<SourceFile> affected = graph.getAffected();
+        report.addPhase("dependencies", start);
+        logger.debug(sources.size() + " of " + fileCount + " files changed; " + affected.size() + " more may depend on them.");
+        sources.addAll(affected);
+        report.add("files", "sources", sources.size());
+
+        if (delombokFiles(settings, coordinator, threadCount, cache, daemonClient, forker, updater, report, sources)) {
+            for (final Map.Entry<File, DelombokManifest> manifest : manifests.entrySet()) {
+                manifest.getValue().write(manifest.getKey());
+            }
+            return true;
+        }
+        // Leave the manifests alone so the failed files are processed again next time...
+        logger.warn("Delombok did not complete; the manifest was not updated.");
+        return false;
+    }
+
+    /**
+     * Delomboks the given source files, in parallel shards if more than one thread is allowed, and in the
+     * daemon if there is one.  Files found in the cache are copied from there instead.
+     *
+     * @return <code>true</code> if delombok completed successfully.
+     */
+    private boolean delombokFiles (final DelombokSettings settings, final ReactorCoordinator coordinator, final int threadCount,
+            final DelombokCache cache, final DelombokDaemonClient daemonClient, final DelombokFork forker, final OutputUpdater updater,
+            final DelombokReport report, final List<SourceFile> sources) throws ClassNotFoundException, IllegalAccessException,
+            InstantiationException, InvocationTargetException, IOException, NoSuchMethodException {
+        final Log logger = getLog();
+        List<SourceFile> misses = sources;
+        final Charset charset = null != settings.encoding ? Charset.forName(settings.encoding) : Charset.defaultCharset();
+        if (this.passThrough) {
+            if (LombokDetector.supports(charset)) {
+                final long start = System.nanoTime();
+                misses = new ArrayList<SourceFile>();
+                for (final SourceFile source : sources) {
+                    if (LombokDetector.mayUseLombok(source.getSource())) {
+                        misses.add(source);
+                    } else {
+                        if (this.verbose) {
+                            logger.info("Copying file without lombok: " + source.path);
+                        }
+                        updater.passThrough(source.getSource(), source.getOutput());
+                    }
+                }
+                logger.debug((sources.size() - misses.size()) + " of " + sources.size() + " files do not use lombok.");
+                report.addPhase("passThrough", start);
+                report.add("files", "passedThrough", sources.size() - misses.size());
+            } else {
+                logger.warn("Unable to tell which files use lombok in " + charset + "; delombok-ing all of them.");
+            }
+        }
+        final Map<SourceFile, String> keys = new HashMap<SourceFile, String>();
+        if (null != cache && !LombokDetector.supports(charset)) {
+            logger.warn("Unable to tell which files depend on other types in " + charset + "; not using the cache.");
+        } else if (null != cache) {
+            final long start = System.nanoTime();
+            final List<SourceFile> candidates = misses;
+            misses = new ArrayList<SourceFile>();
+            for (final SourceFile source : candidates) {
+                // The key does not cover the other types, so such files are neither restored nor stored...
+                if (LombokDetector.mayDependOnOtherTypes(source.getSource())) {
+                    misses.add(source);
+                    continue;
+                }
+                final String key = cache.key(source.getSource());
+                if (cache.restore(key, source.getOutput(), updater)) {
+                    report.add("files", "restored", 1);
+                    report.add("bytes", "in", source.getSource().length());
+                    if (this.verbose) {
+                        logger.info("Restored from cache: " + source.path);
+                    }
+                } else {
+                    keys.put(source, key);
+                    misses.add(source);
+                }
+            }
+            logger.debug((candidates.size() - misses.size()) + " of " + candidates.size() + " files restored from cache.");
+            report.addPhase("cacheRestore", start);
+        }
+        if (misses.isEmpty()) {
+            return true;
+        }
+
+        // Sources that are not processed together may still refer to each other...
+        final Set<File> sourceDirectories = new LinkedHashSet<File>();
+        for (final SourceFile source : sources) {
+            sourceDirectories.add(source.sourceDirectory);
+        }
+        final StringBuilder sourcePath = new StringBuilder(StringUtils.defaultString(settings.sourcepath));
+        for (final File sourceDirectory : sourceDirectories) {
+            if (sourcePath.length() > 0) {
+                sourcePath.append(File.pathSeparatorChar);
+            }
+            sourcePath.append(sourceDirectory.getPath());
+        }
+        final DelombokSettings partialSettings = settings.withSourcepath(sourcePath.toString());
+        final int workers = acquireWorkers(coordinator, threadCount, report);
+        final List<String> batches = new ArrayList<String>();
+        final long start = System.nanoTime();
+        final boolean success;
+        try {
+            final DelombokRequest request = new DelombokRequest(partialSettings, misses, workers, this.batchSize);
+            Boolean remoteSuccess = null;
+            if (null != daemonClient) {
+                try {
+                    logger.debug("Delombok-ing " + misses.size() + " files in daemon " + daemonClient.getId() + '.');
+                    remoteSuccess = daemonClient.execute(request, System.err, updater, batches);
+                } catch (final IOException e) {
+                    logger.warn("Unable to use the delombok daemon; delombok-ing in this JVM. " + e.getMessage());
+                    batches.clear();
+                }
+            } else if (null != forker) {
+                logger.debug("Delombok-ing " + misses.size() + " files in a forked JVM.");
+                remoteSuccess = forker.execute(request, updater, batches);
+            }
+            success = null != remoteSuccess
+                ? remoteSuccess
+                : request.execute(System.err, updater, batches, coordinator.getExecutor());
+        } finally {
+            coordinator.release(workers);
+        }
+        report.addPhase("delombok", start);
+        report.add("files", "delomboked", misses.size());
+        for (final SourceFile source : misses) {
+            report.add("bytes", "in", source.getSource().length());
+        }
+        for (final String line : batches) {
+            logger.debug(line);
+        }
+
+        if (success && null != cache) {
+            for (final Map.Entry<SourceFile, String> entry : keys.entrySet()) {
+                final File output = entry.getKey().getOutput();
+                if (output.isFile()) {
+                    cache.store(entry.getValue(), output);
+                }
+            }
+            final int evicted = cache.evict();
+            if (evicted > 0) {
+                logger.debug("Evicted " + evicted + " files from cache.");
+            }
+        }
+        return success;
+    }
+
+    /**
+     * Waits for delombok threads shared with the other modules of the build.
+     *
+     * @return the number of threads acquired, at most <code>threadCount</code>.
+     */
+    private int acquireWorkers (final ReactorCoordinator coordinator, final int threadCount, final DelombokReport report) {
+        final long start = System.nanoTime();
+        final int workers = coordinator.acquire(threadCount);
+        final long waitNanos = System.nanoTime() - start;
+        report.add("phaseNanos", "reactorWait", waitNanos);
+        if (workers < threadCount || TimeUnit.NANOSECONDS.toMillis(waitNanos) > 0) {
+            getLog().debug(String.format("Waited %d ms for %d of %d build-wide delombok threads.",
+                TimeUnit.NANOSECONDS.toMillis(waitNanos), workers, coordinator.getWorkerCount()));
+        }
+        return workers;
+    }
+
+    /**
+     * Removes the dependencies that contain none of the packages the sources refer to, unless a dependency
+     * that does depends on them.
+     */
+    private List<Artifact> pruneClasspath (final List<SourceSet> sourceSets, final SourceScanner scanner,
+            final Collection<Artifact> dependencies) throws IOException {
+        final long start = System.nanoTime();
+        final Set<String> packages = new HashSet<String>();
+        for (final SourceSet sourceSet : sourceSets) {
+            for (final String path : scanner.scan(sourceSet.sourceDirectory)) {
+                if (path.endsWith(".java")) {
+                    ImportScanner.scan(new File(sourceSet.sourceDirectory, path), packages);
+                }
+            }
+        }
+        final File indexFile = null != this.classpathIndexFile
+            ? this.classpathIndexFile
+            : new File(this.repositorySession.getLocalRepository().getBasedir(), "lombok-classpath.index");
+        final ClasspathIndex index = new ClasspathIndex(indexFile);
+        index.load();
+        final List<Artifact> pruned = index.prune(dependencies, packages);
+        try {
+            index.store();
+        } catch (final IOException e) {
+            getLog().warn("Unable to update the classpath index " + indexFile + "; " + e.getMessage());
+        }
+        getLog().debug(String.format("Pruned the classpath to %d of %d dependencies in %.1f ms; %d jars opened, %d jar indexes reused.",
+            pruned.size(), dependencies.size(), (System.nanoTime() - start) / 1e6, index.getOpenedCount(), index.getReusedCount()));
+        return pruned;
+    }
+
+    /**
+     * Adds the number and total size of the files of a directory to the report.
+     */
+    private static void countFiles (final DelombokReport report, final File directory, final String files, final String bytes)
+            throws IOException {
+        for (final String path : SourceScanner.ALL.scan(directory)) {
+            report.add("files", files, 1);
+            report.add("bytes", bytes, new File(directory, path).length());
+        }
+    }
+
+    /**
+     * Copies a resource file to the output directory, the way delombok does for non-java files.
+     */
+    private void copyResource (final SourceFile resource, final OutputUpdater updater, final DelombokReport report)
+            throws IOException {
+        // Like delombok, skip class files and resources in hidden directories...
+        final String path = resource.path;
+        final String directory = '/' + path.substring(0, path.lastIndexOf('/') + 1);
+        if (path.endsWith(".class") || directory.contains("/.")) {
+            return;
+        }
+        if (this.verbose) {
+            getLog().info("Copying resource file: " + path);
+        }
+        final long start = System.nanoTime();
+        updater.copy(resource.getSource(), resource.getOutput());
+        report.addPhase("resources", start);
+        report.add("files", "resources", 1);
+    }
 }
@@ -0,0 +1,289 @@
+package lombok.maven;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * Index of the packages contained in classpath jars, used to leave jars that the sources never refer to
+ * off the classpath of delombok.
+ * <p>
+ * Jars are identified by path, size and modification time, and their packages are kept for the lifetime
+ * of the plugin's class realm, so a jar shared by many modules of a reactor is only opened once.  The
+ * index can also be kept in a file shared by all builds, so that only new or changed jars are ever opened;
+ * every index file has an in-memory index of its own, so what one index learns only goes into its file.
+ */
+final class ClasspathIndex {
+
+    private static final String VERSIONS = "META-INF/versions/";
+
+    private static final String HEADER = "# lombok-maven-plugin classpath index 1";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** The packages of the jars, by fingerprint, by the absolute path of their index file, or "" for none. */
+    private static final ConcurrentMap<String, ConcurrentMap<String, Set<String>>> INDEXES =
+        new ConcurrentHashMap<String, ConcurrentMap<String, Set<String>>>();
+
+    /** The index files this realm already read. */
+    private static final Set<File> LOADED = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+    /** The file the index is kept in, or <code>null</code>. */
+    private final File indexFile;
+
+    /** The packages of the jars known to this index, by fingerprint; also what its users synchronize on. */
+    private final ConcurrentMap<String, Set<String>> packages;
+
+    private final AtomicInteger opened = new AtomicInteger();
+
+    private final AtomicInteger reused = new AtomicInteger();
+
+    /**
+     * @param indexFile the file the index is kept in between builds, or <code>null</code> to keep it in memory only.
+     */
+    ClasspathIndex (final File indexFile) {
+        this.indexFile = indexFile;
+        final String key = null == indexFile ? "" : indexFile.getAbsolutePath();
+        final ConcurrentMap<String, Set<String>> created = new ConcurrentHashMap<String, Set<String>>();
+        final ConcurrentMap<String, Set<String>> existing = INDEXES.putIfAbsent(key, created);
+        this.packages = null != existing ? existing : created;
+    }
+
+    /**
+     * The number of jars that had to be opened to be indexed.
+     */
+    int getOpenedCount () {
+        return opened.get();
+    }
+
+    /**
+     * The number of jars whose index was already known.
+     */
+    int getReusedCount () {
+        return reused.get();
+    }
+
+    static String fingerprint (final File jar) {
+        return jar.getAbsolutePath() + '|' + jar.length() + '|' + jar.lastModified();
+    }
+
+    /**
+     * Lists the packages that contain classes in a jar.
+     */
+    Set<String> packagesOf (final File jar) throws IOException {
+        final String fingerprint = fingerprint(jar);
+        final Set<String> cached = this.packages.get(fingerprint);
+        if (null != cached) {
+            reused.incrementAndGet();
+            return cached;
+        }
+        opened.incrementAndGet();
+        final Set<String> jarPackages = new HashSet<String>();
+        final ZipFile zip = new ZipFile(jar);
+        try {
+            final Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                final String name = entries.nextElement().getName();
+                final int slash = name.lastIndexOf('/');
+                if (name.endsWith(".class") && slash > 0) {
+                    // Multi-release jars keep versioned classes under META-INF/versions/<n>/...
+                    final int start = name.startsWith(VERSIONS) ? name.indexOf('/', VERSIONS.length()) + 1 : 0;
+                    if (start < slash) {
+                        jarPackages.add(name.substring(start, slash).replace('/', '.'));
+                    }
+                }
+            }
+        } finally {
+            zip.close();
+        }
+        final Set<String> result = Collections.unmodifiableSet(jarPackages);
+        this.packages.put(fingerprint, result);
+        return result;
+    }
+
+    /**
+     * Reads the index kept by earlier builds, unless this realm already did.  An unreadable index is ignored.
+     */
+    void load () {
+        if (null == indexFile || !LOADED.add(indexFile.getAbsoluteFile()) || !indexFile.isFile()) {
+            return;
+        }
+        try {
+            // A concurrent build may be replacing the index...
+            synchronized (packages) {
+                final RandomAccessFile lockFile = openLockFile();
+                try {
+                    final FileLock lock = lockFile.getChannel().lock(0L, Long.MAX_VALUE, true);
+                    try {
+                        packages.putAll(read(indexFile));
+                    } finally {
+                        lock.release();
+                    }
+                } finally {
+                    lockFile.close();
+                }
+            }
+        } catch (final IOException e) {
+            // It is only a cache...
+        }
+    }
+
+    private RandomAccessFile openLockFile () throws IOException {
+        final File parent = indexFile.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        return new RandomAccessFile(new File(parent, indexFile.getName() + ".lock"), "rw");
+    }
+
+    private static Map<String, Set<String>> read (final File file) throws IOException {
+        final Map<String, Set<String>> result = new HashMap<String, Set<String>>();
+        final BufferedReader reader = Files.newBufferedReader(file.toPath(), UTF_8);
+        try {
+            if (!HEADER.equals(reader.readLine())) {
+                return result;
+            }
+            String line;
+            while (null != (line = reader.readLine())) {
+                // fingerprint <TAB> package,package,...
+                final int tab = line.lastIndexOf('\t');
+                if (tab > 0) {
+                    final String list = line.substring(tab + 1);
+                    final Set<String> jarPackages = list.isEmpty()
+                        ? Collections.<String>emptySet()
+                        : new HashSet<String>(Arrays.asList(list.split(",")));
+                    result.put(line.substring(0, tab), Collections.unmodifiableSet(jarPackages));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+
+    /**
+     * Adds the jars this index opened to the index file, merged with what other builds added meanwhile.
+     * Jars that changed or no longer exist are dropped from the file.
+     */
+    void store () throws IOException {
+        if (null == indexFile || 0 == opened.get()) {
+            return;
+        }
+        // Concurrent builds must not lose each other's jars, and the locks of a file cannot overlap in a JVM...
+        synchronized (packages) {
+            final RandomAccessFile lockFile = openLockFile();
+            try {
+                final FileLock lock = lockFile.getChannel().lock();
+                try {
+                    write();
+                } finally {
+                    lock.release();
+                }
+            } finally {
+                lockFile.close();
+            }
+        }
+    }
+
+    private void write () throws IOException {
+        final Map<String, Set<String>> merged = new TreeMap<String, Set<String>>();
+        if (indexFile.isFile()) {
+            merged.putAll(read(indexFile));
+        }
+        merged.putAll(packages);
+        final File temp = new File(indexFile.getAbsoluteFile().getParentFile(), indexFile.getName() + ".tmp");
+        final BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), UTF_8);
+        try {
+            writer.write(HEADER);
+            writer.write('\n');
+            for (final Map.Entry<String, Set<String>> entry : merged.entrySet()) {
+                if (isCurrent(entry.getKey())) {
+                    writer.write(entry.getKey());
+                    writer.write('\t');
+                    writer.write(StringUtils.join(new TreeSet<String>(entry.getValue()), ','));
+                    writer.write('\n');
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        // An interrupted build must not leave a partly written index behind...
+        try {
+            Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Indicates whether a fingerprint still describes the jar at its path.
+     */
+    private static boolean isCurrent (final String fingerprint) {
+        final int end = fingerprint.lastIndexOf('|', fingerprint.lastIndexOf('|') - 1);
+        return end > 0 && fingerprint.equals(fingerprint(new File(fingerprint.substring(0, end))));
+    }
+
+    /**
+     * Selects the dependencies that may be needed to resolve the given packages: those whose jar contains
+     * one of them, and everything those depend on, since the supertypes and the types of the signatures of
+     * a class may come from its own dependencies.  Directories and anything that is not a readable jar are
+     * always kept, along with their dependencies.
+     *
+     * @param dependencies the resolved dependencies, in classpath order.
+     * @param packages the packages referred to by the sources.
+     */
+    List<Artifact> prune (final Collection<Artifact> dependencies, final Set<String> packages) {
+        final Set<String> keptIds = new HashSet<String>();
+        for (final Artifact artifact : dependencies) {
+            final File file = artifact.getFile();
+            if (null == file || !file.isFile()) {
+                keptIds.add(artifact.getId());
+                continue;
+            }
+            try {
+                if (!Collections.disjoint(packagesOf(file), packages)) {
+                    keptIds.add(artifact.getId());
+                }
+            } catch (final IOException e) {
+                // Not a jar we can read; let javac decide...
+                keptIds.add(artifact.getId());
+            }
+        }
+        final List<Artifact> pruned = new ArrayList<Artifact>(dependencies.size());
+        for (final Artifact artifact : dependencies) {
+            // The trail leads from the project to the artifact, through the artifacts that depend on it...
+            final List<String> trail = artifact.getDependencyTrail();
+            if (keptIds.contains(artifact.getId()) || (null != trail && !Collections.disjoint(trail, keptIds))) {
+                pruned.add(artifact);
+            }
+        }
+        return pruned;
+    }
+}
@@ -0,0 +1,129 @@
+package lombok.maven;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+
+/**
+ * Delombok the java sources with lombok annotations of every module of the reactor in a single pass, e.g. to
+ * prepare the sources for an aggregated javadoc.  The modules refer to each other's sources, so the reactor
+ * does not need to be compiled first; every module gets its delombok-ed sources in its own output directory.
+ *
+ * @see <a href="http://projectlombok.org/features/delombok.html">Delombok</a>
+ */
+@Mojo(name="delombokAggregate", defaultPhase=LifecyclePhase.GENERATE_SOURCES, requiresDependencyResolution=ResolutionScope.COMPILE,
+    aggregator=true, threadSafe=true)
+public class DelombokAggregateMojo extends AbstractDelombokMojo {
+
+    /**
+     * Location of the lombok annotated source files of every module, relative to the base directory of the module.
+     */
+    @Parameter(property="lombok.moduleSourceDirectory", defaultValue="src/main/lombok", required=true)
+    private String moduleSourceDirectory;
+
+    /**
+     * Location of the generated source files of every module, relative to the build directory of the module.
+     */
+    @Parameter(property="lombok.moduleOutputDirectory", defaultValue="generated-sources/delombok", required=true)
+    private String moduleOutputDirectory;
+
+    /**
+     * The modules of the reactor.
+     */
+    @Parameter(defaultValue="${reactorProjects}", required=true, readonly=true)
+    private List<MavenProject> reactorProjects;
+
+    /** The module of every source set, by id. */
+    private final Map<String, MavenProject> modules = new HashMap<String, MavenProject>();
+
+    @Override
+    protected String getGoalDescription() {
+        return "Delombok Aggregate";
+    }
+
+    @Override
+    protected File getOutputDirectory() {
+        return new File(project.getBuild().getDirectory(), moduleOutputDirectory);
+    }
+
+    @Override
+    protected File getSourceDirectory() {
+        return new File(project.getBasedir(), moduleSourceDirectory);
+    }
+
+    @Override
+    List<SourceSet> getSourceSets () {
+        final List<SourceSet> sourceSets = new ArrayList<SourceSet>(reactorProjects.size());
+        modules.clear();
+        for (final MavenProject module : reactorProjects) {
+            // Artifact ids only need to be unique within a group...
+            final String id = modules.containsKey(module.getArtifactId())
+                ? module.getGroupId() + '.' + module.getArtifactId()
+                : module.getArtifactId();
+            modules.put(id, module);
+            sourceSets.add(new SourceSet(id, new File(module.getBasedir(), moduleSourceDirectory),
+                new File(module.getBuild().getDirectory(), moduleOutputDirectory)));
+        }
+        return sourceSets;
+    }
+
+    /**
+     * The dependencies of all the modules, except the modules themselves, whose sources are used instead.
+     */
+    @Override
+    Collection<Artifact> getDependencies () {
+        final Set<String> moduleIds = new HashSet<String>();
+        for (final MavenProject module : reactorProjects) {
+            moduleIds.add(module.getGroupId() + ':' + module.getArtifactId());
+        }
+        final Map<String, Artifact> dependencies = new LinkedHashMap<String, Artifact>();
+        for (final MavenProject module : reactorProjects) {
+            for (final Artifact artifact : module.getArtifacts()) {
+                if (null != artifact.getFile() && !moduleIds.contains(artifact.getGroupId() + ':' + artifact.getArtifactId())
+                    && !dependencies.containsKey(artifact.getDependencyConflictId())) {
+                    dependencies.put(artifact.getDependencyConflictId(), artifact);
+                }
+            }
+        }
+        return dependencies.values();
+    }
+
+    @Override
+    protected String getSourcePath() {
+        final List<String> sourceRoots = new ArrayList<String>();
+        for (final MavenProject module : reactorProjects) {
+            sourceRoots.addAll(module.getCompileSourceRoots());
+        }
+        return StringUtils.join(sourceRoots, File.pathSeparatorChar);
+    }
+
+    @Override
+    protected void addSourceRoot(final String path) {
+        project.addCompileSourceRoot(path);
+    }
+
+    @Override
+    MavenProject getProject (final SourceSet sourceSet) {
+        return modules.get(sourceSet.id);
+    }
+
+    @Override
+    void addSourceRoot (final SourceSet sourceSet, final String path) {
+        modules.get(sourceSet.id).addCompileSourceRoot(path);
+    }
+}
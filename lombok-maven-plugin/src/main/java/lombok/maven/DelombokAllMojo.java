@@ -0,0 +1,99 @@
+package lombok.maven;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+
+/**
+ * Delombok java source and test source with lombok annotations in a single pass, so that the main
+ * sources are parsed and attributed only once.  Use it instead of both the delombok and testDelombok goals.
+ *
+ * @see <a href="http://projectlombok.org/features/delombok.html">Delombok</a>
+ */
+@Mojo(name="delombokAll", defaultPhase=LifecyclePhase.GENERATE_SOURCES, requiresDependencyResolution=ResolutionScope.TEST, threadSafe=true)
+public class DelombokAllMojo extends AbstractDelombokMojo {
+
+    /**
+     * Location of the lombok annotated source files.
+     */
+    @Parameter(property="lombok.sourceDirectory", defaultValue="${project.basedir}/src/main/lombok", required=true)
+    private File sourceDirectory;
+
+    /**
+     * Location of the generated source files.
+     */
+    @Parameter(property="lombok.outputDirectory", defaultValue="${project.build.directory}/generated-sources/delombok", required=true)
+    private File outputDirectory;
+
+    /**
+     * Location of the lombok annotated test source files.
+     */
+    @Parameter(property="lombok.testSourceDirectory", defaultValue="${project.basedir}/src/test/lombok", required=true)
+    private File testSourceDirectory;
+
+    /**
+     * Location of the generated test source files.
+     */
+    @Parameter(property="lombok.testOutputDirectory", defaultValue="${project.build.directory}/generated-test-sources/delombok", required=true)
+    private File testOutputDirectory;
+
+    @Override
+    protected String getGoalDescription() {
+        return "Delombok All";
+    }
+
+    @Override
+    protected File getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    @Override
+    protected File getSourceDirectory() {
+        return sourceDirectory;
+    }
+
+    @Override
+    List<SourceSet> getSourceSets () {
+        final List<SourceSet> sourceSets = new ArrayList<SourceSet>(2);
+        sourceSets.add(new SourceSet("main", sourceDirectory, outputDirectory));
+        sourceSets.add(new SourceSet("test", testSourceDirectory, testOutputDirectory));
+        return sourceSets;
+    }
+
+    @Override
+    protected String getSourcePath() {
+      return StringUtils.joinWith(File.pathSeparator,
+          StringUtils.join(this.project.getCompileSourceRoots(), File.pathSeparatorChar),
+          StringUtils.join(this.project.getTestCompileSourceRoots(), File.pathSeparatorChar)
+      );
+    }
+
+    /**
+     * Main and test sources do not belong in the same sources jar.
+     */
+    @Override
+    boolean supportsSourcesJar () {
+        return false;
+    }
+
+    @Override
+    protected void addSourceRoot(final String path) {
+        project.addCompileSourceRoot(path);
+    }
+
+    @Override
+    void addSourceRoot (final SourceSet sourceSet, final String path) {
+        if ("test".equals(sourceSet.id)) {
+            project.addTestCompileSourceRoot(path);
+        } else {
+            addSourceRoot(path);
+        }
+    }
+}
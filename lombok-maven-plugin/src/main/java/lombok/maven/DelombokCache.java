@@ -0,0 +1,201 @@
+package lombok.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A local, content-addressed store of delombok-ed files that may be shared by many builds.
+ * <p>
+ * Entries are keyed by the hash of a source file and of the <code>lombok.config</code> files that apply
+ * to it, combined with a fingerprint of everything else that influences its delombok-ed form, so identical
+ * inputs produce the same key in any workspace.  Only the content of these files goes into the key, not
+ * their location.  Files whose output depends on other types must not be cached, since the key does not
+ * cover those.  The store is bounded in size; the least recently used entries are evicted first.
+ */
+final class DelombokCache {
+
+    private static final String EXTENSION = ".java";
+
+    private final File directory;
+
+    private final long maxSize;
+
+    private final String fingerprint;
+
+    /** The hash of the configuration files that apply to a directory, by directory. */
+    private final Map<File, String> configHashes = new HashMap<File, String>();
+
+    /**
+     * @param directory the directory of the store.
+     * @param maxSize the size in bytes above which entries are evicted.
+     * @param fingerprint the fingerprint of everything but the sources that influences the output.
+     */
+    DelombokCache (final File directory, final long maxSize, final String fingerprint) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Parses a size such as <code>512M</code>; the suffixes <code>K</code>, <code>M</code> and
+     * <code>G</code> are supported.
+     *
+     * @throws NumberFormatException if the size cannot be understood.
+     */
+    static long parseSize (final String size) {
+        final String value = size.trim().toUpperCase(Locale.ENGLISH);
+        final long unit;
+        switch (value.isEmpty() ? ' ' : value.charAt(value.length() - 1)) {
+            case 'K':
+                unit = 1024L;
+                break;
+            case 'M':
+                unit = 1024L * 1024L;
+                break;
+            case 'G':
+                unit = 1024L * 1024L * 1024L;
+                break;
+            default:
+                return Long.parseLong(value);
+        }
+        return unit * Long.parseLong(value.substring(0, value.length() - 1).trim());
+    }
+
+    /**
+     * Computes the key of a source file.
+     */
+    String key (final File source) throws IOException {
+        return Hashes.hash(fingerprint, configHash(source.getAbsoluteFile().getParentFile()), Hashes.hash(source));
+    }
+
+    private String configHash (final File directory) throws IOException {
+        String hash = configHashes.get(directory);
+        if (null == hash) {
+            final List<String> contents = new ArrayList<String>();
+            for (final File config : DependencyGraph.findConfigs(directory)) {
+                contents.add(Hashes.hash(config));
+            }
+            hash = Hashes.hash(contents.toArray());
+            configHashes.put(directory, hash);
+        }
+        return hash;
+    }
+
+    private File entry (final String key) {
+        return new File(new File(directory, key.substring(0, 2)), key + EXTENSION);
+    }
+
+    /**
+     * Copies a cached output to its target.
+     *
+     * @param updater the updater of the output files.
+     * @return <code>false</code> if there is no entry for the key.
+     */
+    boolean restore (final String key, final File target, final OutputUpdater updater) throws IOException {
+        final File entry = entry(key);
+        try {
+            updater.copy(entry, target);
+        } catch (final NoSuchFileException e) {
+            // Not cached, or evicted by a concurrent build...
+            return false;
+        }
+        // Record the use for the eviction policy...
+        entry.setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * Adds a delombok-ed output to the store.
+     */
+    void store (final String key, final File output) throws IOException {
+        final File entry = entry(key);
+        if (entry.isFile()) {
+            return;
+        }
+        createParent(entry);
+        // Copy to a temporary file first, so that concurrent builds never see a partial entry...
+        final Path temp = Files.createTempFile(entry.getParentFile().toPath(), key, ".tmp");
+        try {
+            Files.copy(output.toPath(), temp, StandardCopyOption.REPLACE_EXISTING);
+            try {
+                Files.move(temp, entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry.toPath());
+            }
+        } catch (final FileAlreadyExistsException e) {
+            // Stored by a concurrent build in the meantime...
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the store fits its maximum size.
+     *
+     * @return the number of evicted entries.
+     */
+    int evict () throws IOException {
+        final List<File> entries = new ArrayList<File>();
+        long size = 0;
+        final File[] buckets = directory.listFiles();
+        if (null != buckets) {
+            for (final File bucket : buckets) {
+                final File[] files = bucket.listFiles();
+                if (null != files) {
+                    for (final File file : files) {
+                        if (file.getName().endsWith(EXTENSION)) {
+                            entries.add(file);
+                            size += file.length();
+                        }
+                    }
+                }
+            }
+        }
+        if (size <= maxSize) {
+            return 0;
+        }
+
+        final Map<File, Long> lastUsed = new HashMap<File, Long>();
+        for (final File entry : entries) {
+            lastUsed.put(entry, entry.lastModified());
+        }
+        Collections.sort(entries, new Comparator<File>() {
+            @Override
+            public int compare (final File a, final File b) {
+                return lastUsed.get(a).compareTo(lastUsed.get(b));
+            }
+        });
+        int evicted = 0;
+        for (final File entry : entries) {
+            if (size <= maxSize) {
+                break;
+            }
+            final long length = entry.length();
+            if (Files.deleteIfExists(entry.toPath())) {
+                size -= length;
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    private static void createParent (final File file) throws IOException {
+        final File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package lombok.maven;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A long-lived process that delomboks on behalf of Maven builds on the same machine.
+ * <p>
+ * Keeping lombok's shadow class loaders loaded and javac's code compiled by the JIT across builds saves the
+ * warm-up that every Maven invocation would otherwise pay.  The daemon listens on the loopback interface
+ * only, announces its port and a secret token in a state file readable only by its owner, and exits after
+ * being idle for a while.
+ *
+ * @see DelombokDaemonClient
+ */
+public final class DelombokDaemon {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final String PING = "PING";
+
+    static final String DELOMBOK = "DELOMBOK";
+
+    static final String SHUTDOWN = "SHUTDOWN";
+
+    static final String OK = "OK";
+
+    static final String FAILED = "FAILED";
+
+    static final String ERROR = "ERROR";
+
+    private final File stateFile;
+
+    private final String id;
+
+    private final String token;
+
+    private final ServerSocket serverSocket;
+
+    private final AtomicInteger busy = new AtomicInteger();
+
+    private volatile boolean running = true;
+
+    private DelombokDaemon (final File stateFile, final String id, final int idleTimeoutSeconds) throws IOException {
+        this.stateFile = stateFile;
+        this.id = id;
+        final byte[] secret = new byte[16];
+        new SecureRandom().nextBytes(secret);
+        this.token = Hashes.toHex(secret);
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.serverSocket.setSoTimeout(idleTimeoutSeconds * 1000);
+    }
+
+    /**
+     * Runs the daemon.
+     *
+     * @param args the state file, the idle timeout in seconds, and the id of the daemon.
+     */
+    public static void main (final String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: DelombokDaemon <state file> <idle timeout seconds> <id>");
+            System.exit(2);
+        }
+        final DelombokDaemon daemon = new DelombokDaemon(new File(args[0]), args[2], Integer.parseInt(args[1]));
+        daemon.announce();
+        try {
+            daemon.serve();
+        } finally {
+            daemon.retire();
+        }
+        // Delombok threads must not keep the JVM alive...
+        System.exit(0);
+    }
+
+    /**
+     * Writes the state file that clients use to find the daemon.
+     */
+    private void announce () throws IOException {
+        final Properties state = new Properties();
+        state.setProperty("id", id);
+        state.setProperty("port", Integer.toString(serverSocket.getLocalPort()));
+        state.setProperty("token", token);
+        final File temp = new File(stateFile.getPath() + ".tmp");
+        final OutputStream out = new FileOutputStream(temp);
+        try {
+            restrictToOwner(temp);
+            state.store(out, "lombok-maven-plugin delombok daemon");
+        } finally {
+            out.close();
+        }
+        try {
+            Files.move(temp.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        log("Listening on port " + serverSocket.getLocalPort());
+    }
+
+    private static void restrictToOwner (final File file) {
+        try {
+            Files.setPosixFilePermissions(file.toPath(), PosixFilePermissions.fromString("rw-------"));
+        } catch (final UnsupportedOperationException e) {
+            // Not a POSIX file system; rely on the permissions of the directory...
+        } catch (final IOException e) {
+            log("Unable to restrict the permissions of " + file + ": " + e);
+        }
+    }
+
+    private void serve () throws IOException {
+        while (running) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (final SocketTimeoutException e) {
+                if (0 == busy.get()) {
+                    log("Idle timeout reached; exiting.");
+                    return;
+                }
+                continue;
+            }
+            busy.incrementAndGet();
+            final Thread handler = new Thread(new Runnable() {
+                @Override
+                public void run () {
+                    try {
+                        handle(socket);
+                    } catch (final IOException e) {
+                        log("Connection failed: " + e);
+                    } finally {
+                        busy.decrementAndGet();
+                        try {
+                            socket.close();
+                        } catch (final IOException e) {
+                            // Nothing left to do...
+                        }
+                    }
+                }
+            }, "delombok-daemon-client");
+            handler.setDaemon(true);
+            handler.start();
+        }
+    }
+
+    private void handle (final Socket socket) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        if (!isToken(in.readUTF())) {
+            log("Rejected a connection with an invalid token.");
+            return;
+        }
+        final String command = in.readUTF();
+        if (PING.equals(command)) {
+            out.writeUTF(id);
+        } else if (SHUTDOWN.equals(command)) {
+            running = false;
+            serverSocket.close();
+            out.writeUTF(OK);
+        } else if (DELOMBOK.equals(command)) {
+            final DelombokRequest request = DelombokRequest.load(new ByteArrayInputStream(readBytes(in)));
+            final ByteArrayOutputStream feedback = new ByteArrayOutputStream();
+            final PrintStream feedbackStream = new PrintStream(feedback, true, UTF_8.name());
+            final OutputUpdater updater = new OutputUpdater(request.settings.writeIfChanged);
+            final List<String> report = new ArrayList<String>();
+            String status;
+            try {
+                status = request.execute(feedbackStream, updater, report) ? OK : FAILED;
+            } catch (final Exception e) {
+                final StringWriter trace = new StringWriter();
+                e.printStackTrace(new PrintWriter(trace));
+                feedbackStream.print(trace);
+                status = ERROR;
+            }
+            feedbackStream.flush();
+            out.writeUTF(status);
+            writeBytes(out, feedback.toByteArray());
+            updater.writeTo(out);
+            out.writeInt(report.size());
+            for (final String line : report) {
+                out.writeUTF(line);
+            }
+        } else {
+            out.writeUTF(ERROR);
+            writeBytes(out, ("Unknown command: " + command).getBytes(UTF_8));
+        }
+        out.flush();
+    }
+
+    /**
+     * Compares a token with that of this daemon, in a time that does not depend on where they differ.
+     */
+    private boolean isToken (final String candidate) {
+        return null != candidate && MessageDigest.isEqual(token.getBytes(UTF_8), candidate.getBytes(UTF_8));
+    }
+
+    private void retire () {
+        // Only remove the state file if no other daemon has replaced it...
+        final Properties state = new Properties();
+        try {
+            final InputStream in = new FileInputStream(stateFile);
+            try {
+                state.load(in);
+            } finally {
+                in.close();
+            }
+            if (isToken(state.getProperty("token"))) {
+                Files.deleteIfExists(stateFile.toPath());
+            }
+        } catch (final IOException e) {
+            // Already gone...
+        }
+    }
+
+    static byte[] readBytes (final DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    static void writeBytes (final DataOutputStream out, final byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void log (final String message) {
+        System.err.println("[" + new java.util.Date() + "] " + message);
+    }
+}
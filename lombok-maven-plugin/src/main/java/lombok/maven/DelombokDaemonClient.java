@@ -0,0 +1,230 @@
+package lombok.maven;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends delombok requests to a {@link DelombokDaemon}, starting one if none is running.
+ * <p>
+ * Daemons are identified by their java launcher, options and classpath, so a build with another JVM or
+ * another version of the plugin or of lombok gets a daemon of its own.
+ */
+final class DelombokDaemonClient {
+
+    private static final long STARTUP_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+    private final File directory;
+
+    private final File javaExecutable;
+
+    private final List<String> jvmArgs;
+
+    private final List<File> classPath;
+
+    private final int idleTimeoutSeconds;
+
+    private final String id;
+
+    /**
+     * @param directory where the daemons keep their state and log files.
+     * @param javaExecutable the java launcher of the daemon.
+     * @param jvmArgs the options of the daemon.
+     * @param classPath the classpath of the daemon: the plugin and its dependencies.
+     * @param idleTimeoutSeconds how long a daemon waits for requests before it exits.
+     */
+    DelombokDaemonClient (final File directory, final File javaExecutable, final List<String> jvmArgs, final List<File> classPath,
+            final int idleTimeoutSeconds) {
+        this.directory = directory;
+        this.javaExecutable = javaExecutable;
+        this.jvmArgs = jvmArgs;
+        this.classPath = classPath;
+        this.idleTimeoutSeconds = idleTimeoutSeconds;
+        final StringBuilder entries = new StringBuilder();
+        for (final File file : classPath) {
+            entries.append(file.getAbsolutePath()).append('|').append(file.length()).append('|').append(file.lastModified()).append(';');
+        }
+        this.id = Hashes.hash(ClasspathIndex.fingerprint(javaExecutable), jvmArgs, entries).substring(0, 16);
+    }
+
+    String getId () {
+        return id;
+    }
+
+    /**
+     * Has the daemon delombok the request, starting it first if needed.
+     *
+     * @param feedback where the feedback of delombok is replayed.
+     * @param updater receives the counts and timings of the updater of the daemon.
+     * @param report receives the statistics of the batches.
+     * @return <code>true</code> if delombok completed successfully.
+     * @throws IOException if the daemon could not be reached or failed unexpectedly.
+     */
+    boolean execute (final DelombokRequest request, final PrintStream feedback, final OutputUpdater updater,
+            final List<String> report) throws IOException {
+        final ByteArrayOutputStream requestBytes = new ByteArrayOutputStream();
+        request.store(requestBytes);
+        final Socket socket = connect();
+        try {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out.writeUTF(DelombokDaemon.DELOMBOK);
+            DelombokDaemon.writeBytes(out, requestBytes.toByteArray());
+            out.flush();
+            final String status = in.readUTF();
+            feedback.print(new String(DelombokDaemon.readBytes(in), DelombokDaemon.UTF_8));
+            feedback.flush();
+            if (DelombokDaemon.ERROR.equals(status)) {
+                throw new IOException("The delombok daemon failed; see the output above.");
+            }
+            updater.readFrom(in);
+            for (int lines = in.readInt(); lines > 0; lines--) {
+                report.add(in.readUTF());
+            }
+            return DelombokDaemon.OK.equals(status);
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Opens an authenticated connection to the daemon, starting it if it is not running.
+     */
+    private Socket connect () throws IOException {
+        Socket socket = tryConnect();
+        if (null != socket) {
+            return socket;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory " + directory);
+        }
+        // Concurrent builds must not start several daemons...
+        final RandomAccessFile lockFile = new RandomAccessFile(new File(directory, id + ".lock"), "rw");
+        try {
+            final FileLock lock = lockFile.getChannel().lock();
+            try {
+                socket = tryConnect();
+                if (null == socket) {
+                    socket = start();
+                }
+            } finally {
+                lock.release();
+            }
+        } finally {
+            lockFile.close();
+        }
+        return socket;
+    }
+
+    private File getStateFile () {
+        return new File(directory, id + ".properties");
+    }
+
+    /**
+     * Connects to the daemon described by the state file, if it is alive and is the expected one.
+     *
+     * @return the connection, with the token already sent, or <code>null</code>.
+     */
+    private Socket tryConnect () {
+        final File stateFile = getStateFile();
+        if (!stateFile.isFile()) {
+            return null;
+        }
+        try {
+            final Properties state = new Properties();
+            final InputStream in = new FileInputStream(stateFile);
+            try {
+                state.load(in);
+            } finally {
+                in.close();
+            }
+            final int port = Integer.parseInt(state.getProperty("port"));
+            final String token = state.getProperty("token");
+            if (!id.equals(ping(port, token))) {
+                return null;
+            }
+            final Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeUTF(token);
+            return socket;
+        } catch (final IOException e) {
+            return null;
+        } catch (final RuntimeException e) {
+            // A state file that is incomplete or garbled...
+            return null;
+        }
+    }
+
+    private static String ping (final int port, final String token) throws IOException {
+        final Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        try {
+            final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeUTF(token);
+            out.writeUTF(DelombokDaemon.PING);
+            out.flush();
+            return new DataInputStream(socket.getInputStream()).readUTF();
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Launches a daemon and waits until it accepts connections.
+     */
+    private Socket start () throws IOException {
+        final StringBuilder classPathBuilder = new StringBuilder();
+        for (final File file : classPath) {
+            if (classPathBuilder.length() > 0) {
+                classPathBuilder.append(File.pathSeparatorChar);
+            }
+            classPathBuilder.append(file.getAbsolutePath());
+        }
+        final List<String> command = new ArrayList<String>();
+        command.add(javaExecutable.getPath());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(classPathBuilder.toString());
+        command.add(DelombokDaemon.class.getName());
+        command.add(getStateFile().getAbsolutePath());
+        command.add(Integer.toString(idleTimeoutSeconds));
+        command.add(id);
+        final ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(ProcessBuilder.Redirect.appendTo(new File(directory, id + ".log")));
+        final Process process = builder.start();
+
+        final long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            final Socket socket = tryConnect();
+            if (null != socket) {
+                return socket;
+            }
+            try {
+                if (process.waitFor(100, TimeUnit.MILLISECONDS)) {
+                    throw new IOException("The delombok daemon exited with " + process.exitValue()
+                        + "; see " + new File(directory, id + ".log"));
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while starting the delombok daemon", e);
+            }
+        }
+        process.destroy();
+        throw new IOException("The delombok daemon did not start within " + STARTUP_TIMEOUT_MILLIS + " ms");
+    }
+}
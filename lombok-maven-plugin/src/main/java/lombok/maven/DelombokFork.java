@@ -0,0 +1,259 @@
+package lombok.maven;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Delomboks a request in a new JVM, whose heap, garbage collector and other options are tuned for delombok
+ * rather than inherited from Maven.
+ * <p>
+ * The request and the result go through files, and the forked JVM prints the feedback of delombok to the
+ * console of the build.  With Java 13 or later, the forked JVM can archive the classes it loaded at exit,
+ * javac's in particular, so that later forks map them instead of loading and verifying them again; lombok's
+ * own classes come from its shadow class loader, which class data sharing does not cover.
+ */
+public final class DelombokFork {
+
+    /** The version of every java executable used so far, by path, size and modification time. */
+    private static final ConcurrentMap<String, Integer> JAVA_VERSIONS = new ConcurrentHashMap<String, Integer>();
+
+    private final File javaExecutable;
+
+    private final List<String> jvmArgs;
+
+    private final List<File> classPath;
+
+    private final File directory;
+
+    private final boolean classDataSharing;
+
+    /**
+     * @param javaExecutable the java launcher of the forked JVM.
+     * @param jvmArgs the options of the forked JVM.
+     * @param classPath the classpath of the forked JVM: the plugin and its dependencies.
+     * @param directory where the class data sharing archives are kept.
+     * @param classDataSharing whether to archive the classes of the forked JVM, if it is recent enough.
+     */
+    DelombokFork (final File javaExecutable, final List<String> jvmArgs, final List<File> classPath, final File directory,
+            final boolean classDataSharing) {
+        this.javaExecutable = javaExecutable;
+        this.jvmArgs = jvmArgs;
+        this.classPath = classPath;
+        this.directory = directory;
+        this.classDataSharing = classDataSharing;
+    }
+
+    /**
+     * Has a new JVM delombok the request.
+     *
+     * @param updater receives the counts and timings of the updater of the forked JVM.
+     * @param report receives the statistics of the batches.
+     * @return <code>true</code> if delombok completed successfully.
+     * @throws IOException if the JVM could not be started or failed unexpectedly.
+     */
+    boolean execute (final DelombokRequest request, final OutputUpdater updater, final List<String> report) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory " + directory);
+        }
+        final File requestFile = File.createTempFile("delombok", ".request", directory);
+        final File resultFile = new File(directory, requestFile.getName().replace(".request", ".result"));
+        File newArchive = null;
+        try {
+            final OutputStream requestOut = new FileOutputStream(requestFile);
+            try {
+                request.store(requestOut);
+            } finally {
+                requestOut.close();
+            }
+
+            final List<String> command = new ArrayList<String>();
+            command.add(javaExecutable.getPath());
+            command.addAll(jvmArgs);
+            File archive = null;
+            if (classDataSharing && getJavaVersion() >= 13) {
+                archive = getArchive();
+                if (archive.isFile()) {
+                    command.add("-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+                } else {
+                    // Concurrent forks must not write the same archive...
+                    newArchive = new File(directory, requestFile.getName().replace(".request", ".jsa"));
+                    command.add("-XX:ArchiveClassesAtExit=" + newArchive.getAbsolutePath());
+                }
+            }
+            command.add("-cp");
+            command.add(joinPath(classPath));
+            command.add(DelombokFork.class.getName());
+            command.add(requestFile.getAbsolutePath());
+            command.add(resultFile.getAbsolutePath());
+            final Process process = new ProcessBuilder(command).inheritIO().start();
+            final int exitValue;
+            try {
+                exitValue = process.waitFor();
+            } catch (final InterruptedException e) {
+                process.destroy();
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the forked JVM", e);
+            }
+            if (0 != exitValue || !resultFile.isFile()) {
+                throw new IOException("The forked JVM exited with " + exitValue + "; see the output above.");
+            }
+            if (null != newArchive && newArchive.isFile()) {
+                moveIntoPlace(newArchive, archive);
+            }
+
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(resultFile)));
+            try {
+                final String status = in.readUTF();
+                if (DelombokDaemon.ERROR.equals(status)) {
+                    throw new IOException("Delombok failed in the forked JVM; see the output above.");
+                }
+                updater.readFrom(in);
+                for (int lines = in.readInt(); lines > 0; lines--) {
+                    report.add(in.readUTF());
+                }
+                return DelombokDaemon.OK.equals(status);
+            } finally {
+                in.close();
+            }
+        } finally {
+            Files.deleteIfExists(requestFile.toPath());
+            Files.deleteIfExists(resultFile.toPath());
+            if (null != newArchive) {
+                Files.deleteIfExists(newArchive.toPath());
+            }
+        }
+    }
+
+    private static String joinPath (final List<File> files) {
+        final StringBuilder path = new StringBuilder();
+        for (final File file : files) {
+            if (path.length() > 0) {
+                path.append(File.pathSeparatorChar);
+            }
+            path.append(file.getAbsolutePath());
+        }
+        return path.toString();
+    }
+
+    /**
+     * The archive of this JVM and classpath; any change of either makes a new one.
+     */
+    private File getArchive () {
+        final StringBuilder inputs = new StringBuilder();
+        for (final File file : classPath) {
+            inputs.append(ClasspathIndex.fingerprint(file)).append(';');
+        }
+        return new File(directory, Hashes.hash(ClasspathIndex.fingerprint(javaExecutable), jvmArgs, inputs).substring(0, 16) + ".jsa");
+    }
+
+    private static void moveIntoPlace (final File source, final File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * The feature version of the java executable, e.g. 8 or 17; <code>0</code> if it cannot be told.
+     */
+    private int getJavaVersion () throws IOException {
+        final String key = ClasspathIndex.fingerprint(javaExecutable);
+        Integer version = JAVA_VERSIONS.get(key);
+        if (null == version) {
+            version = readJavaVersion(javaExecutable);
+            JAVA_VERSIONS.put(key, version);
+        }
+        return version;
+    }
+
+    private static int readJavaVersion (final File javaExecutable) throws IOException {
+        final Process process = new ProcessBuilder(javaExecutable.getPath(), "-XshowSettings:properties", "-version")
+            .redirectErrorStream(true)
+            .start();
+        int version = 0;
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), DelombokDaemon.UTF_8));
+        try {
+            String line;
+            while (null != (line = reader.readLine())) {
+                final String[] property = line.trim().split("\\s*=\\s*", 2);
+                if (2 == property.length && "java.specification.version".equals(property[0])) {
+                    version = parseJavaVersion(property[1]);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        try {
+            process.waitFor();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while checking the version of " + javaExecutable, e);
+        }
+        return version;
+    }
+
+    /**
+     * Parses a specification version, either <code>1.8</code> or <code>17</code>.
+     */
+    static int parseJavaVersion (final String specificationVersion) {
+        try {
+            final String version = specificationVersion.startsWith("1.") ? specificationVersion.substring(2) : specificationVersion;
+            return Integer.parseInt(version);
+        } catch (final NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Delomboks the request in the given file, and writes the result to the other given file.
+     *
+     * @param args the request file and the result file.
+     */
+    public static void main (final String[] args) throws IOException {
+        final InputStream requestIn = new FileInputStream(args[0]);
+        final DelombokRequest request;
+        try {
+            request = DelombokRequest.load(requestIn);
+        } finally {
+            requestIn.close();
+        }
+        final OutputUpdater updater = new OutputUpdater(request.settings.writeIfChanged);
+        final List<String> report = new ArrayList<String>();
+        String status;
+        try {
+            status = request.execute(System.err, updater, report) ? DelombokDaemon.OK : DelombokDaemon.FAILED;
+        } catch (final Exception e) {
+            e.printStackTrace();
+            status = DelombokDaemon.ERROR;
+        }
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(args[1])));
+        try {
+            out.writeUTF(status);
+            updater.writeTo(out);
+            out.writeInt(report.size());
+            for (final String line : report) {
+                out.writeUTF(line);
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
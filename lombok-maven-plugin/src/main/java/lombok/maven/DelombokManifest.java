@@ -0,0 +1,234 @@
+package lombok.maven;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Record of the source files processed by a previous delombok execution.
+ * <p>
+ * Each source file is tracked by its size, modification time and content hash, so that only new or
+ * modified files need to be delombok-ed again.  The fingerprint captures everything else that influences
+ * the generated output (classpath, encoding, format preferences, ...); when it differs, the manifest is
+ * of no use and every file has to be processed.
+ * <p>
+ * Java files also record whether they use lombok, whether their output may depend on other types, and the
+ * types and packages they refer to, from which a
+ * {@link DependencyGraph} tells which unchanged files have to be delombok-ed again with the changed ones.
+ */
+final class DelombokManifest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String HEADER = "# lombok-maven-plugin delombok manifest 4";
+
+    private static final String FINGERPRINT = "fingerprint=";
+
+    /**
+     * Tracked state of a single source file.
+     */
+    static final class Entry {
+        final long size;
+        final long lastModified;
+        final String hash;
+        /** Whether the file may use lombok, so that <code>lombok.config</code> files may influence its output. */
+        final boolean lombok;
+        /** Whether the file may use lombok features whose output depends on other types. */
+        final boolean dependent;
+        /** The types and packages a java file refers to, as found by {@link ImportScanner}. */
+        final List<String> references;
+
+        Entry (final long size, final long lastModified, final String hash, final boolean lombok, final boolean dependent,
+                final List<String> references) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.lombok = lombok;
+            this.dependent = dependent;
+            this.references = references;
+        }
+    }
+
+    private final String fingerprint;
+
+    /** Source files keyed by their path relative to the source directory, using '/' as separator. */
+    private final SortedMap<String, Entry> entries;
+
+    private DelombokManifest (final String fingerprint, final SortedMap<String, Entry> entries) {
+        this.fingerprint = fingerprint;
+        this.entries = entries;
+    }
+
+    String getFingerprint () {
+        return fingerprint;
+    }
+
+    Map<String, Entry> getEntries () {
+        return Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Reads a manifest written by {@link #write(File)}.
+     *
+     * @return the manifest, or <code>null</code> if it does not exist or cannot be understood.
+     */
+    static DelombokManifest read (final File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+            try {
+                if (!HEADER.equals(reader.readLine())) {
+                    return null;
+                }
+                final String fingerprintLine = reader.readLine();
+                if (null == fingerprintLine || !fingerprintLine.startsWith(FINGERPRINT)) {
+                    return null;
+                }
+                final SortedMap<String, Entry> entries = new TreeMap<String, Entry>();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // size <TAB> lastModified <TAB> hash <TAB> lombok <TAB> dependent <TAB> references <TAB> path
+                    final String[] fields = line.split("\t", 7);
+                    if (fields.length != 7) {
+                        return null;
+                    }
+                    final List<String> references = fields[5].isEmpty()
+                        ? Collections.<String>emptyList()
+                        : Arrays.asList(StringUtils.split(fields[5], ','));
+                    entries.put(fields[6], new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2],
+                        "1".equals(fields[3]), "1".equals(fields[4]), references));
+                }
+                return new DelombokManifest(fingerprintLine.substring(FINGERPRINT.length()), entries);
+            } finally {
+                reader.close();
+            }
+        } catch (final IOException e) {
+            return null;
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+
+    void write (final File file) throws IOException {
+        final File parent = file.getParentFile();
+        if (null != parent && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), UTF_8));
+        try {
+            writer.write(HEADER);
+            writer.write('\n');
+            writer.write(FINGERPRINT);
+            writer.write(fingerprint);
+            writer.write('\n');
+            for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+                final Entry value = entry.getValue();
+                writer.write(Long.toString(value.size));
+                writer.write('\t');
+                writer.write(Long.toString(value.lastModified));
+                writer.write('\t');
+                writer.write(value.hash);
+                writer.write('\t');
+                writer.write(value.lombok ? "1" : "0");
+                writer.write('\t');
+                writer.write(value.dependent ? "1" : "0");
+                writer.write('\t');
+                writer.write(StringUtils.join(value.references, ','));
+                writer.write('\t');
+                writer.write(entry.getKey());
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Scans a source directory, reusing what a previous manifest found for files whose size and
+     * modification time are unchanged.
+     *
+     * @param sourceDirectory the directory to scan.
+     * @param scanner selects the files of the directory.
+     * @param fingerprint the fingerprint of everything but the sources that influences the output.
+     * @param previous the manifest of the previous execution; may be <code>null</code>.
+     * @param detectLombok whether {@link LombokDetector} supports the encoding of the files; if not, every
+     *     java file is assumed to use lombok, and to depend on other types.
+     */
+    static DelombokManifest scan (final File sourceDirectory, final SourceScanner scanner, final String fingerprint,
+            final DelombokManifest previous, final boolean detectLombok) throws IOException {
+        final Map<String, Entry> previousEntries = null == previous ? Collections.<String, Entry>emptyMap() : previous.entries;
+        final SortedMap<String, Entry> entries = new TreeMap<String, Entry>();
+        for (final String path : scanner.scan(sourceDirectory)) {
+            final File file = new File(sourceDirectory, path);
+            final long size = file.length();
+            final long lastModified = file.lastModified();
+            final Entry old = previousEntries.get(path);
+            if (null != old && old.size == size && old.lastModified == lastModified) {
+                entries.put(path, old);
+            } else {
+                final boolean java = path.endsWith(".java");
+                final boolean lombok = java && (!detectLombok || LombokDetector.mayUseLombok(file));
+                final boolean dependent = lombok && (!detectLombok || LombokDetector.mayDependOnOtherTypes(file));
+                List<String> references = Collections.emptyList();
+                // Files without lombok may still pass on changes, e.g. to the supertypes of a delegate...
+                if (java) {
+                    final TreeSet<String> found = new TreeSet<String>();
+                    ImportScanner.scanReferences(file, found);
+                    references = new ArrayList<String>(found);
+                }
+                entries.put(path, new Entry(size, lastModified, Hashes.hash(file), lombok, dependent, references));
+            }
+        }
+        return new DelombokManifest(fingerprint, entries);
+    }
+
+    /**
+     * Lists the files that are new or whose content differs from the previous manifest.
+     * All files are considered changed when the fingerprints differ.
+     */
+    List<String> getChangedPaths (final DelombokManifest previous) {
+        final boolean comparable = null != previous && fingerprint.equals(previous.fingerprint);
+        final List<String> changed = new ArrayList<String>();
+        for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+            final Entry old = comparable ? previous.entries.get(entry.getKey()) : null;
+            if (null == old || !old.hash.equals(entry.getValue().hash)) {
+                changed.add(entry.getKey());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Lists the files of the previous manifest that no longer exist.
+     */
+    List<String> getRemovedPaths (final DelombokManifest previous) {
+        final List<String> removed = new ArrayList<String>();
+        if (null != previous) {
+            for (final String path : previous.entries.keySet()) {
+                if (!entries.containsKey(path)) {
+                    removed.add(path);
+                }
+            }
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,172 @@
+package lombok.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * An asynchronous writer for the output of a delombok session: a writer thread writes the delombok-ed files
+ * while javac goes on printing the next ones, which pays off where writing is slow, e.g. on network file
+ * systems.  Only writing is taken off the javac thread; javac still reads and parses the sources itself.
+ * <p>
+ * Printed files are handed to the writer in a fixed number of buffers; when all of them wait to be written,
+ * the printer waits for the writer, so that memory stays bounded.  The time spent waiting is counted by the
+ * updater.
+ */
+final class DelombokPipeline {
+
+    /** The size of the buffers the printer starts with. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Tells the writer that no more files will come. */
+    private static final Write END = new Write(null, null);
+
+    /**
+     * A printed file, waiting to be written.
+     */
+    private static final class Write {
+        final File output;
+        final ByteBuffer content;
+
+        Write (final File output, final ByteBuffer content) {
+            this.output = output;
+            this.content = content;
+        }
+    }
+
+    private final OutputUpdater updater;
+
+    private final BlockingQueue<ByteBuffer> freeBuffers = new LinkedBlockingQueue<ByteBuffer>();
+
+    private final BlockingQueue<Write> pendingWrites = new LinkedBlockingQueue<Write>();
+
+    private final Thread writer;
+
+    /** The first failure of the writer, reported to the printer. */
+    private volatile IOException failure;
+
+    private boolean stopped;
+
+    /** Whether the pending files are to be discarded rather than written. */
+    private volatile boolean cancelled;
+
+    /**
+     * @param depth the number of printed files that may wait to be written.
+     */
+    private DelombokPipeline (final OutputUpdater updater, final int depth) {
+        this.updater = updater;
+        for (int i = 0; i < depth; i++) {
+            freeBuffers.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+        }
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run () {
+                write();
+            }
+        }, "delombok-writer");
+        writer.setDaemon(true);
+    }
+
+    /**
+     * Starts the writer of a delombok session.
+     *
+     * @param updater the updater of the output files, which also counts the time spent waiting.
+     * @param depth the number of printed files that may wait to be written.
+     */
+    static DelombokPipeline start (final OutputUpdater updater, final int depth) {
+        final DelombokPipeline pipeline = new DelombokPipeline(updater, depth);
+        pipeline.writer.start();
+        return pipeline;
+    }
+
+    private void write () {
+        while (true) {
+            final Write write;
+            try {
+                write = pendingWrites.take();
+            } catch (final InterruptedException e) {
+                return;
+            }
+            if (END == write) {
+                return;
+            }
+            try {
+                if (null == failure && !cancelled) {
+                    updater.write(write.output, write.content);
+                }
+            } catch (final IOException e) {
+                failure = e;
+            }
+            freeBuffers.add(write.content);
+        }
+    }
+
+    /**
+     * Hands a printed file over to the writer.
+     *
+     * @param content the encoded file, from its position to its limit; it belongs to the writer now.
+     * @return an empty buffer to encode the next file into, once one is free.
+     * @throws IOException if the writer failed to write a previous file.
+     */
+    ByteBuffer submit (final File output, final ByteBuffer content) throws IOException {
+        checkFailure();
+        pendingWrites.add(new Write(output, content));
+        final long start = System.nanoTime();
+        try {
+            return freeBuffers.take();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the delombok writer");
+        } finally {
+            updater.addBackpressure(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Waits for the pending files to be written, once delombok has printed all of them.
+     *
+     * @throws IOException if the writer failed.
+     */
+    void finish () throws IOException {
+        stop();
+        try {
+            writer.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the delombok writer");
+        }
+        checkFailure();
+    }
+
+    /**
+     * Discards the files that wait to be written, and waits for the writer to exit, so that nothing is
+     * written once delombok failed.  Harmless after {@link #finish()}.
+     */
+    void cancel () {
+        cancelled = true;
+        stop();
+        try {
+            writer.join();
+        } catch (final InterruptedException e) {
+            writer.interrupt();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void stop () {
+        if (!stopped) {
+            stopped = true;
+            pendingWrites.add(END);
+        }
+    }
+
+    private void checkFailure () throws IOException {
+        final IOException e = failure;
+        if (null != e) {
+            throw new IOException("Unable to write delombok-ed file: " + e.getMessage(), e);
+        }
+    }
+}
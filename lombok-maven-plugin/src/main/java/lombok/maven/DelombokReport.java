@@ -0,0 +1,163 @@
+package lombok.maven;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measurements of a delombok execution, written as a JSON document so that builds can be compared.
+ * <p>
+ * The report is organized in sections of named values; numeric values can be accumulated, which is
+ * how phase durations (in nanoseconds) and file counts are collected.
+ */
+final class DelombokReport {
+
+    private final Map<String, Object> sections = new LinkedHashMap<String, Object>();
+
+    private Map<String, Object> section (final String name) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> section = (Map<String, Object>)sections.get(name);
+        if (null == section) {
+            section = new LinkedHashMap<String, Object>();
+            sections.put(name, section);
+        }
+        return section;
+    }
+
+    /**
+     * Sets a top-level value.
+     */
+    synchronized void put (final String key, final Object value) {
+        sections.put(key, value);
+    }
+
+    /**
+     * Sets a value in a section.
+     */
+    synchronized void put (final String section, final String key, final Object value) {
+        section(section).put(key, value);
+    }
+
+    /**
+     * Adds to a numeric value in a section, starting from zero.
+     */
+    synchronized void add (final String section, final String key, final long delta) {
+        final Map<String, Object> values = section(section);
+        final Object value = values.get(key);
+        values.put(key, (value instanceof Long ? (Long)value : 0L) + delta);
+    }
+
+    /**
+     * Adds the time elapsed since <code>start</code>, as returned by {@link System#nanoTime()}, to a phase.
+     */
+    void addPhase (final String phase, final long start) {
+        add("phaseNanos", phase, System.nanoTime() - start);
+    }
+
+    /**
+     * The heap memory in use right now, in bytes.
+     */
+    static long getUsedHeap () {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    synchronized void write (final File file) throws IOException {
+        final File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        final StringBuilder json = new StringBuilder();
+        appendJson(json, sections, "");
+        json.append('\n');
+        final Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            out.write(json.toString());
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void appendJson (final StringBuilder json, final Object value, final String indent) {
+        if (value instanceof Map) {
+            final String inner = indent + "  ";
+            json.append('{');
+            String separator = "\n";
+            for (final Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet()) {
+                json.append(separator).append(inner);
+                appendString(json, String.valueOf(entry.getKey()));
+                json.append(": ");
+                appendJson(json, entry.getValue(), inner);
+                separator = ",\n";
+            }
+            json.append(separator.length() > 1 ? "\n" + indent : "").append('}');
+        } else if (value instanceof Collection) {
+            final String inner = indent + "  ";
+            json.append('[');
+            String separator = "\n";
+            for (final Object element : (Collection<?>)value) {
+                json.append(separator).append(inner);
+                appendJson(json, element, inner);
+                separator = ",\n";
+            }
+            json.append(separator.length() > 1 ? "\n" + indent : "").append(']');
+        } else if (value instanceof Number || value instanceof Boolean) {
+            json.append(value);
+        } else if (null == value) {
+            json.append("null");
+        } else {
+            appendString(json, value.toString());
+        }
+    }
+
+    private static void appendString (final StringBuilder json, final String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if ('"' == c || '\\' == c) {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int)c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Builds the list of the slowest files, as JSON objects.
+     *
+     * @param fileNanos the time spent on every file.
+     * @param count the maximum number of files to list.
+     * @param baseDirectory paths below this directory are made relative to it.
+     */
+    static List<Map<String, Object>> slowest (final Map<File, Long> fileNanos, final int count, final File baseDirectory) {
+        final List<Map.Entry<File, Long>> entries = new ArrayList<Map.Entry<File, Long>>(fileNanos.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<File, Long>>() {
+            @Override
+            public int compare (final Map.Entry<File, Long> a, final Map.Entry<File, Long> b) {
+                return b.getValue().compareTo(a.getValue());
+            }
+        });
+        final String base = baseDirectory.getAbsolutePath() + File.separatorChar;
+        final List<Map<String, Object>> slowest = new ArrayList<Map<String, Object>>();
+        for (final Map.Entry<File, Long> entry : entries.subList(0, Math.min(count, entries.size()))) {
+            final String path = entry.getKey().getAbsolutePath();
+            final Map<String, Object> file = new LinkedHashMap<String, Object>();
+            file.put("path", (path.startsWith(base) ? path.substring(base.length()) : path).replace(File.separatorChar, '/'));
+            file.put("nanos", entry.getValue());
+            slowest.add(file);
+        }
+        return slowest;
+    }
+}
@@ -0,0 +1,170 @@
+package lombok.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import lombok.launch.Delombok;
+
+/**
+ * A unit of delombok work: a set of source files and the settings to delombok them with.
+ * <p>
+ * The files can be delombok-ed in batches, each by a Delombok of its own, so that the syntax trees of a
+ * batch can be garbage collected before the next batch is parsed.  Requests can be stored and loaded,
+ * so that they can be executed in another JVM.
+ */
+final class DelombokRequest {
+
+    final DelombokSettings settings;
+
+    final List<SourceFile> sources;
+
+    final int threadCount;
+
+    /** The maximum number of files delombok-ed at once, or <code>0</code> for no limit. */
+    final int batchSize;
+
+    DelombokRequest (final DelombokSettings settings, final List<SourceFile> sources, final int threadCount, final int batchSize) {
+        this.settings = settings;
+        this.sources = sources;
+        this.threadCount = threadCount;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Delomboks the sources in this JVM.
+     *
+     * @param feedback where delombok reports progress and problems.
+     * @param updater the updater of the output files.
+     * @param report receives a line of statistics per batch.
+     * @return <code>true</code> if delombok completed successfully.
+     */
+    boolean execute (final PrintStream feedback, final OutputUpdater updater, final List<String> report) throws ClassNotFoundException,
+            IllegalAccessException, InstantiationException, InvocationTargetException, IOException, NoSuchMethodException {
+        return execute(feedback, updater, report, null);
+    }
+
+    /**
+     * Delomboks the sources in this JVM, running the shards on the given threads.
+     *
+     * @param executor the threads to run the shards on, or <code>null</code> to start threads for every batch.
+     * @see #execute(PrintStream, OutputUpdater, List)
+     */
+    boolean execute (final PrintStream feedback, final OutputUpdater updater, final List<String> report, final ExecutorService executor)
+            throws ClassNotFoundException, IllegalAccessException, InstantiationException, InvocationTargetException, IOException,
+            NoSuchMethodException {
+        final List<List<SourceFile>> batches = batches(sources, batchSize);
+        for (int i = 0; i < batches.size(); i++) {
+            final List<SourceFile> batch = batches.get(i);
+            resetPeakHeap();
+            final long start = System.nanoTime();
+            final List<List<SourceFile>> shards = threadCount > 1 && batch.size() > 1
+                ? ShardedDelombok.partition(batch, threadCount)
+                : Collections.singletonList(batch);
+            final boolean success = shards.size() > 1
+                ? ShardedDelombok.delombok(settings, shards, feedback, updater, executor)
+                : delombok(batch, feedback, updater);
+            report.add(String.format("Batch %d of %d: %d files in %d shards took %d ms; peak heap %d MB", i + 1, batches.size(),
+                batch.size(), shards.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), getPeakHeap() >> 20));
+            if (!success) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean delombok (final List<SourceFile> batch, final PrintStream feedback, final OutputUpdater updater) throws ClassNotFoundException,
+            IllegalAccessException, InstantiationException, InvocationTargetException, IOException, NoSuchMethodException {
+        final ClassLoader shadowClassLoader = Delombok.acquireShadowClassLoader();
+        try {
+            final Delombok delombok = new Delombok(shadowClassLoader);
+            settings.applyTo(delombok);
+            delombok.setFeedback(feedback);
+            return settings.delombok(delombok, batch, updater);
+        } finally {
+            Delombok.releaseShadowClassLoader(shadowClassLoader);
+        }
+    }
+
+    /**
+     * Splits the sources into batches of at most <code>batchSize</code> files, keeping the files of a
+     * package together as far as possible.
+     */
+    static List<List<SourceFile>> batches (final List<SourceFile> sources, final int batchSize) {
+        if (sources.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (batchSize <= 0 || sources.size() <= batchSize) {
+            return Collections.singletonList(sources);
+        }
+        final List<SourceFile> sorted = new ArrayList<SourceFile>(sources);
+        Collections.sort(sorted);
+        final List<List<SourceFile>> batches = new ArrayList<List<SourceFile>>();
+        for (int start = 0; start < sorted.size(); start += batchSize) {
+            batches.add(sorted.subList(start, Math.min(sorted.size(), start + batchSize)));
+        }
+        return batches;
+    }
+
+    private static void resetPeakHeap () {
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (MemoryType.HEAP == pool.getType()) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * The sum of the peak usages of the heap memory pools since they were last reset.
+     */
+    private static long getPeakHeap () {
+        long peak = 0;
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (MemoryType.HEAP == pool.getType()) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    void store (final OutputStream out) throws IOException {
+        final Properties properties = new Properties();
+        settings.store(properties);
+        properties.setProperty("threads", Integer.toString(threadCount));
+        properties.setProperty("batchSize", Integer.toString(batchSize));
+        properties.setProperty("sources.count", Integer.toString(sources.size()));
+        for (int i = 0; i < sources.size(); i++) {
+            final SourceFile source = sources.get(i);
+            properties.setProperty("sources." + i + ".sourceDirectory", source.sourceDirectory.getPath());
+            properties.setProperty("sources." + i + ".path", source.path);
+            properties.setProperty("sources." + i + ".outputDirectory", source.outputDirectory.getPath());
+        }
+        properties.store(out, null);
+    }
+
+    static DelombokRequest load (final InputStream in) throws IOException {
+        final Properties properties = new Properties();
+        properties.load(in);
+        final int sourceCount = Integer.parseInt(properties.getProperty("sources.count", "0"));
+        final List<SourceFile> sources = new ArrayList<SourceFile>(sourceCount);
+        for (int i = 0; i < sourceCount; i++) {
+            sources.add(new SourceFile(new File(properties.getProperty("sources." + i + ".sourceDirectory")),
+                properties.getProperty("sources." + i + ".path"),
+                new File(properties.getProperty("sources." + i + ".outputDirectory"))));
+        }
+        return new DelombokRequest(DelombokSettings.load(properties), sources,
+            Integer.parseInt(properties.getProperty("threads", "1")), Integer.parseInt(properties.getProperty("batchSize", "0")));
+    }
+}
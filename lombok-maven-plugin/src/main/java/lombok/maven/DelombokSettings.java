@@ -0,0 +1,130 @@
+package lombok.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import lombok.launch.Delombok;
+
+/**
+ * The validated configuration of a delombok execution, so that it can be applied to several
+ * {@link Delombok} instances alike, possibly in another JVM.
+ */
+final class DelombokSettings {
+
+    final boolean verbose;
+
+    final String classpath;
+
+    final String sourcepath;
+
+    /** The charset, or <code>null</code> for the platform default. */
+    final String encoding;
+
+    /** The formatting preferences, in the form of the command-line option. */
+    final List<String> formatOptions;
+
+    final File outputDirectory;
+
+    /** Whether output files are only replaced when their content changes. */
+    final boolean writeIfChanged;
+
+    /** The number of printed files that may wait to be written by a {@link DelombokPipeline}, or 0 for none. */
+    final int pipelineDepth;
+
+    DelombokSettings (final boolean verbose, final String classpath, final String sourcepath, final String encoding,
+            final List<String> formatOptions, final File outputDirectory, final boolean writeIfChanged, final int pipelineDepth) {
+        this.verbose = verbose;
+        this.classpath = classpath;
+        this.sourcepath = sourcepath;
+        this.encoding = encoding;
+        this.formatOptions = null == formatOptions ? Collections.<String>emptyList() : formatOptions;
+        this.outputDirectory = outputDirectory;
+        this.writeIfChanged = writeIfChanged;
+        this.pipelineDepth = pipelineDepth;
+    }
+
+    /**
+     * Returns a copy of these settings with a different sourcepath.
+     */
+    DelombokSettings withSourcepath (final String sourcepath) {
+        return new DelombokSettings(verbose, classpath, sourcepath, encoding, formatOptions, outputDirectory, writeIfChanged,
+            pipelineDepth);
+    }
+
+    void applyTo (final Delombok delombok) throws IllegalAccessException, InvocationTargetException {
+        delombok.setVerbose(verbose);
+        delombok.setClasspath(classpath);
+        if (null != encoding) {
+            delombok.setCharset(encoding);
+        }
+        if (!formatOptions.isEmpty()) {
+            delombok.setFormatPreferences(delombok.formatOptionsToMap(formatOptions));
+        }
+        delombok.setOutput(outputDirectory);
+        delombok.setSourcepath(sourcepath);
+    }
+
+    /**
+     * Delomboks source files, having their output go through the updater, and through an asynchronous
+     * writer if the settings call for one.
+     *
+     * @return <code>true</code> if delombok completed successfully.
+     */
+    boolean delombok (final Delombok delombok, final List<SourceFile> sources, final OutputUpdater updater)
+            throws IllegalAccessException, InvocationTargetException, IOException {
+        final List<File> outputs = new ArrayList<File>(sources.size());
+        for (final SourceFile source : sources) {
+            delombok.addFile(source.sourceDirectory, source.path);
+            outputs.add(source.getOutput());
+        }
+        final DelombokPipeline pipeline = pipelineDepth > 0 ? DelombokPipeline.start(updater, pipelineDepth) : null;
+        try {
+            delombok.setWriter(updater.newWriter(outputs, null == encoding ? Charset.defaultCharset() : Charset.forName(encoding),
+                pipeline));
+            final boolean success = delombok.delombok();
+            if (null != pipeline && success) {
+                pipeline.finish();
+            }
+            return success;
+        } finally {
+            if (null != pipeline) {
+                pipeline.cancel();
+            }
+        }
+    }
+
+    void store (final Properties properties) {
+        properties.setProperty("verbose", Boolean.toString(verbose));
+        properties.setProperty("classpath", classpath);
+        properties.setProperty("sourcepath", sourcepath);
+        if (null != encoding) {
+            properties.setProperty("encoding", encoding);
+        }
+        properties.setProperty("formatOptions.count", Integer.toString(formatOptions.size()));
+        for (int i = 0; i < formatOptions.size(); i++) {
+            properties.setProperty("formatOptions." + i, formatOptions.get(i));
+        }
+        properties.setProperty("outputDirectory", outputDirectory.getPath());
+        properties.setProperty("writeIfChanged", Boolean.toString(writeIfChanged));
+        properties.setProperty("pipelineDepth", Integer.toString(pipelineDepth));
+    }
+
+    static DelombokSettings load (final Properties properties) {
+        final int formatOptionCount = Integer.parseInt(properties.getProperty("formatOptions.count", "0"));
+        final List<String> formatOptions = new ArrayList<String>(formatOptionCount);
+        for (int i = 0; i < formatOptionCount; i++) {
+            formatOptions.add(properties.getProperty("formatOptions." + i));
+        }
+        return new DelombokSettings(Boolean.parseBoolean(properties.getProperty("verbose")),
+            properties.getProperty("classpath"), properties.getProperty("sourcepath"), properties.getProperty("encoding"),
+            formatOptions, new File(properties.getProperty("outputDirectory")),
+            Boolean.parseBoolean(properties.getProperty("writeIfChanged")),
+            Integer.parseInt(properties.getProperty("pipelineDepth", "0")));
+    }
+}
@@ -0,0 +1,123 @@
+package lombok.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+
+/**
+ * Delombok java source with lombok annotations, then keep watching the source directory and delombok the files
+ * that change until the build is interrupted.  Lombok stays loaded between changes, so that only the changed
+ * files are processed, by a warm javac.  The configuration is that of the delombok goal; it is always incremental.
+ *
+ * @see <a href="http://projectlombok.org/features/delombok.html">Delombok</a>
+ */
+@Mojo(name="watch", requiresDependencyResolution=ResolutionScope.COMPILE)
+public class DelombokWatchMojo extends DelombokMojo {
+
+    /**
+     * Number of milliseconds without further changes to wait for before delombok-ing, so that saving many
+     * files at once, or a file in several steps, triggers a single delombok.
+     */
+    @Parameter(property="lombok.watchDebounce", defaultValue="200", required=true)
+    private long watchDebounce;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        final Log logger = getLog();
+        // Only the changed files are delombok-ed again...
+        this.incremental = true;
+        super.execute();
+        final File sourceDirectory = getSourceDirectory();
+        if (this.skip || !sourceDirectory.isDirectory()) {
+            return;
+        }
+
+        try {
+            final WatchService watchService = FileSystems.getDefault().newWatchService();
+            try {
+                register(watchService, sourceDirectory.toPath());
+                logger.info("Watching " + sourceDirectory + " for changes; press Ctrl-C to stop.");
+                while (true) {
+                    // Wait for a change, then for the changes to settle...
+                    WatchKey key = watchService.take();
+                    while (null != key) {
+                        handle(watchService, key);
+                        key = watchService.poll(this.watchDebounce, TimeUnit.MILLISECONDS);
+                    }
+                    try {
+                        super.execute();
+                    } catch (final MojoExecutionException e) {
+                        // Keep watching, the next change may well fix it...
+                        logger.error(e.getMessage(), e);
+                    }
+                }
+            } finally {
+                watchService.close();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.info("Stopped watching " + sourceDirectory + '.');
+        } catch (final ClosedWatchServiceException e) {
+            logger.info("Stopped watching " + sourceDirectory + '.');
+        } catch (final IOException e) {
+            logger.error("Unable to watch the sources!", e);
+            throw new MojoExecutionException("I/O problem while watching " + sourceDirectory, e);
+        }
+    }
+
+    /**
+     * Watches a directory and all the directories below it.
+     */
+    private static void register (final WatchService watchService, final Path root) throws IOException {
+        if (!Files.isDirectory(root)) {
+            // A file, or a directory that is already gone...
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory (final Path dir, final BasicFileAttributes attributes) throws IOException {
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Consumes the events of a key, watching the directories that were created.
+     */
+    private void handle (final WatchService watchService, final WatchKey key) throws IOException {
+        final Path dir = (Path)key.watchable();
+        for (final WatchEvent<?> event : key.pollEvents()) {
+            if (StandardWatchEventKinds.OVERFLOW == event.kind()) {
+                continue;
+            }
+            final Path path = dir.resolve((Path)event.context());
+            if (getLog().isDebugEnabled()) {
+                getLog().debug(event.kind().name() + ": " + path);
+            }
+            if (StandardWatchEventKinds.ENTRY_CREATE == event.kind()) {
+                register(watchService, path);
+            }
+        }
+        key.reset();
+    }
+}
@@ -0,0 +1,183 @@
+package lombok.maven;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Tells which unchanged files have to be delombok-ed again because other files changed.
+ * <p>
+ * With lombok, the output of a file depends on more than the file itself: <code>@Delegate</code>,
+ * <code>@ExtensionMethod</code> or <code>@SuperBuilder</code> generate code from other types, and
+ * <code>lombok.config</code> files configure every file below them.  The graph over-approximates these
+ * dependencies: a file that uses such features, as told by {@link LombokDetector#mayDependOnOtherTypes},
+ * depends on the files of its own package, of the packages it imports on demand, and of the types it
+ * imports or names by their qualified name, in any source set; and every file that uses lombok depends on
+ * the <code>lombok.config</code> files of its directory and the directories above it.  Other files come out
+ * of delombok the same whatever the other types, so they are never affected by them, but they still pass
+ * changes on: a delegate also exposes the methods its type inherits.  Dependencies are therefore followed
+ * transitively through every java file, and what lombok generates in an affected file may in turn
+ * influence another.
+ */
+final class DependencyGraph {
+
+    static final String CONFIG_FILE = "lombok.config";
+
+    private static final Pattern STOP_BUBBLING = Pattern.compile("(?i)\\s*config\\.stopBubbling\\s*=\\s*true\\s*(#.*)?");
+
+    /** The java files, by the types and packages they refer to. */
+    private final Map<String, List<SourceFile>> dependents = new HashMap<String, List<SourceFile>>();
+
+    /** The files that use lombok, for the configuration files above them. */
+    private final List<SourceFile> lombokFiles = new ArrayList<SourceFile>();
+
+    /** The files whose output may depend on other types. */
+    private final Set<SourceFile> dependentFiles = new HashSet<SourceFile>();
+
+    private final Set<SourceFile> changed = new HashSet<SourceFile>();
+
+    /**
+     * Adds the files of a source set, as they are now.
+     */
+    void add (final SourceSet sourceSet, final DelombokManifest manifest) {
+        for (final Map.Entry<String, DelombokManifest.Entry> entry : manifest.getEntries().entrySet()) {
+            final SourceFile file = sourceSet.file(entry.getKey());
+            if (entry.getValue().lombok) {
+                lombokFiles.add(file);
+            }
+            if (entry.getValue().dependent) {
+                dependentFiles.add(file);
+            }
+            for (final String reference : entry.getValue().references) {
+                List<SourceFile> files = dependents.get(reference);
+                if (null == files) {
+                    files = new ArrayList<SourceFile>();
+                    dependents.put(reference, files);
+                }
+                files.add(file);
+            }
+        }
+    }
+
+    /**
+     * Records a file as new, modified or removed.
+     */
+    void change (final SourceFile file) {
+        changed.add(file);
+    }
+
+    /**
+     * The files that use lombok and did not change, but whose output may depend on the files that did.
+     * Changed <code>lombok.config</code> files affect every file below them that uses lombok; other changed
+     * files only affect the files whose output may depend on other types.
+     */
+    Set<SourceFile> getAffected () {
+        final Set<SourceFile> affected = new TreeSet<SourceFile>();
+        final Set<SourceFile> visited = new HashSet<SourceFile>(changed);
+        final Deque<SourceFile> pending = new ArrayDeque<SourceFile>(changed);
+        while (!pending.isEmpty()) {
+            final SourceFile file = pending.removeFirst();
+            final boolean config = file.path.endsWith('/' + CONFIG_FILE) || file.path.equals(CONFIG_FILE);
+            for (final SourceFile dependent : getDependents(file)) {
+                if ((config || dependentFiles.contains(dependent)) && !changed.contains(dependent)) {
+                    affected.add(dependent);
+                }
+                if (visited.add(dependent)) {
+                    pending.add(dependent);
+                }
+            }
+        }
+        return affected;
+    }
+
+    private List<SourceFile> getDependents (final SourceFile file) {
+        final int slash = file.path.lastIndexOf('/');
+        final String directory = file.path.substring(0, slash + 1);
+        final String name = file.path.substring(slash + 1);
+        if (CONFIG_FILE.equals(name)) {
+            final List<SourceFile> below = new ArrayList<SourceFile>();
+            for (final SourceFile candidate : lombokFiles) {
+                if (candidate.sourceDirectory.equals(file.sourceDirectory) && candidate.path.startsWith(directory)) {
+                    below.add(candidate);
+                }
+            }
+            return below;
+        }
+        if (!name.endsWith(".java")) {
+            return Collections.emptyList();
+        }
+        // Assuming that the directories follow the packages...
+        final String packageName = directory.isEmpty() ? "" : directory.substring(0, slash).replace('/', '.');
+        final String type = name.substring(0, name.length() - ".java".length());
+        final List<SourceFile> result = new ArrayList<SourceFile>();
+        for (final String reference : new String[] { ImportScanner.packageReference(packageName),
+                packageName.isEmpty() ? type : packageName + '.' + type }) {
+            final List<SourceFile> files = dependents.get(reference);
+            if (null != files) {
+                result.addAll(files);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the <code>lombok.config</code> files that apply to the files of a directory, from the one in the
+     * directory itself up, up to one that sets <code>config.stopBubbling = true</code>.
+     */
+    static List<File> findConfigs (final File directory) throws IOException {
+        final List<File> configs = new ArrayList<File>();
+        for (File parent = directory.getAbsoluteFile(); null != parent; parent = parent.getParentFile()) {
+            final File config = new File(parent, CONFIG_FILE);
+            if (config.isFile()) {
+                configs.add(config);
+                if (stopsBubbling(config)) {
+                    break;
+                }
+            }
+        }
+        return configs;
+    }
+
+    /**
+     * Finds the <code>lombok.config</code> files above a source directory that apply to its files, from the
+     * nearest one up, up to one that sets <code>config.stopBubbling = true</code>.
+     */
+    static List<File> findInheritedConfigs (final File sourceDirectory) throws IOException {
+        final List<File> configs = findConfigs(sourceDirectory);
+        if (!configs.isEmpty() && configs.get(0).equals(new File(sourceDirectory.getAbsoluteFile(), CONFIG_FILE))) {
+            configs.remove(0);
+        }
+        return configs;
+    }
+
+    private static boolean stopsBubbling (final File config) throws IOException {
+        if (!config.isFile()) {
+            return false;
+        }
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(config), DelombokDaemon.UTF_8));
+        try {
+            String line;
+            while (null != (line = reader.readLine())) {
+                if (STOP_BUBBLING.matcher(line).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            reader.close();
+        }
+    }
+}
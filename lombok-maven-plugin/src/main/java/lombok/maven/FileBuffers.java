@@ -0,0 +1,116 @@
+package lombok.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.lang3.SystemUtils;
+
+/**
+ * Reads and encodes file contents without copying them through intermediate arrays.
+ * <p>
+ * Source files are read through memory mappings, so that scanning and hashing them does not copy them to
+ * the heap.  Windows does not allow a mapped file to be replaced until the mapping is garbage collected,
+ * so files are never mapped there, nor are small files, which are cheaper to read than to map.
+ */
+final class FileBuffers {
+
+    /** The size below which files are read rather than mapped. */
+    private static final long MIN_MAPPED_SIZE = 64 * 1024;
+
+    private static final boolean MAPPING_LOCKS_FILES = SystemUtils.IS_OS_WINDOWS;
+
+    private FileBuffers () {
+    }
+
+    /**
+     * Reads a file that this process does not replace, mapping it if it is large enough.
+     *
+     * @return the content, from position zero to the limit.
+     */
+    static ByteBuffer map (final File file) throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            final long size = channel.size();
+            if (MAPPING_LOCKS_FILES || size < MIN_MAPPED_SIZE) {
+                return read(channel, size, file);
+            }
+            // The mapping remains valid after the channel is closed...
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads a file into the heap.  Unlike {@link #map(File)}, the file can be replaced right away.
+     */
+    static ByteBuffer read (final File file) throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return read(channel, channel.size(), file);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static ByteBuffer read (final FileChannel channel, final long size, final File file) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("File too large: " + file);
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate((int)size);
+        // The file may shrink while being read...
+        int count = 0;
+        while (buffer.hasRemaining() && count >= 0) {
+            count = channel.read(buffer);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Encodes characters into a buffer, replacing it with a larger one as needed.
+     *
+     * @param encoder the encoder, which is reset first.
+     * @param chars the characters to encode.
+     * @param buffer the buffer to encode into, if it is large enough; its content is discarded.
+     * @return the buffer holding the encoded characters, from position zero to the limit.
+     */
+    static ByteBuffer encode (final CharsetEncoder encoder, final CharSequence chars, final ByteBuffer buffer)
+            throws CharacterCodingException {
+        final CharBuffer in = CharBuffer.wrap(chars);
+        ByteBuffer out = buffer;
+        out.clear();
+        encoder.reset();
+        boolean flushing = false;
+        while (true) {
+            final CoderResult result = flushing ? encoder.flush(out) : encoder.encode(in, out, true);
+            if (result.isOverflow()) {
+                out = grow(out, in.remaining());
+            } else if (result.isUnderflow()) {
+                if (flushing) {
+                    break;
+                }
+                flushing = true;
+            } else {
+                result.throwException();
+            }
+        }
+        out.flip();
+        return out;
+    }
+
+    private static ByteBuffer grow (final ByteBuffer buffer, final int remainingChars) {
+        final int capacity = Math.max(buffer.capacity() * 2, buffer.position() + remainingChars + 16);
+        final ByteBuffer larger = buffer.isDirect() ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+}
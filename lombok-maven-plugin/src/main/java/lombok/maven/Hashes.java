@@ -0,0 +1,63 @@
+package lombok.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content hashing helpers used to detect changed delombok inputs.
+ */
+final class Hashes {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Hashes () {
+    }
+
+    static MessageDigest newDigest () {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-1...
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Hashes the content of a file.
+     */
+    static String hash (final File file) throws IOException {
+        final MessageDigest digest = newDigest();
+        digest.update(FileBuffers.map(file));
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Hashes a sequence of values; <code>null</code> values are distinguished from empty ones.
+     */
+    static String hash (final Object... values) {
+        final MessageDigest digest = newDigest();
+        for (final Object value : values) {
+            digest.update(null == value ? (byte)0 : (byte)1);
+            if (null != value) {
+                digest.update(String.valueOf(value).getBytes(UTF_8));
+            }
+            // Separator, so that ("ab", "c") differs from ("a", "bc")...
+            digest.update((byte)0);
+        }
+        return toHex(digest.digest());
+    }
+
+    static String toHex (final byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,133 @@
+package lombok.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A fast, approximate scanner for the packages a java source file refers to.
+ * <p>
+ * Rather than parsing, it looks for the package declaration, the imports, and anything that looks like a
+ * qualified type name.  It may report packages that are not really referenced (e.g. names in comments),
+ * which is harmless when deciding what has to stay on the classpath, or which files to delombok again.
+ */
+final class ImportScanner {
+
+    /** Package names are ASCII in practice; this charset maps every byte to a char, whatever the encoding. */
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private static final Pattern PACKAGE = Pattern.compile("(?m)^\\s*package\\s+([\\w$.\\s]+?)\\s*;");
+
+    private static final Pattern IMPORT = Pattern.compile("(?m)^\\s*import\\s+(?:static\\s+)?([\\w$.\\s]+?)(\\.\\s*\\*)?\\s*;");
+
+    private static final Pattern QUALIFIED_NAME = Pattern.compile("\\b([a-z_$][\\w$]*(?:\\.[a-z_$][\\w$]*)*)\\.([A-Z][\\w$]*)");
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private ImportScanner () {
+    }
+
+    /**
+     * Adds the packages referred to by a source file to a set.
+     */
+    static void scan (final File source, final Set<String> packages) throws IOException {
+        final String text = read(source);
+
+        final Matcher packageMatcher = PACKAGE.matcher(text);
+        if (packageMatcher.find()) {
+            packages.add(WHITESPACE.matcher(packageMatcher.group(1)).replaceAll(""));
+        }
+
+        final Matcher importMatcher = IMPORT.matcher(text);
+        while (importMatcher.find()) {
+            final String name = WHITESPACE.matcher(importMatcher.group(1)).replaceAll("");
+            final String packageName = packageOf(name, null != importMatcher.group(2));
+            if (!packageName.isEmpty()) {
+                packages.add(packageName);
+            }
+        }
+
+        final Matcher nameMatcher = QUALIFIED_NAME.matcher(text);
+        while (nameMatcher.find()) {
+            packages.add(nameMatcher.group(1));
+        }
+    }
+
+    /**
+     * Adds the types and packages a source file may depend on to a set: <code>a.b.C</code> for a top-level
+     * type, and <code>a.b.*</code> for a whole package, like the package of the file itself.
+     */
+    static void scanReferences (final File source, final Set<String> references) throws IOException {
+        final String text = read(source);
+
+        final Matcher packageMatcher = PACKAGE.matcher(text);
+        references.add(packageReference(packageMatcher.find() ? WHITESPACE.matcher(packageMatcher.group(1)).replaceAll("") : ""));
+
+        final Matcher importMatcher = IMPORT.matcher(text);
+        while (importMatcher.find()) {
+            final String name = WHITESPACE.matcher(importMatcher.group(1)).replaceAll("");
+            references.add(typeOf(name, null != importMatcher.group(2)));
+        }
+
+        final Matcher nameMatcher = QUALIFIED_NAME.matcher(text);
+        while (nameMatcher.find()) {
+            references.add(nameMatcher.group(1) + '.' + nameMatcher.group(2));
+        }
+    }
+
+    private static String read (final File source) throws IOException {
+        return new String(Files.readAllBytes(source.toPath()), ISO_8859_1);
+    }
+
+    /**
+     * The reference to a whole package, e.g. <code>a.b.*</code>, or <code>*</code> for the default package.
+     */
+    static String packageReference (final String packageName) {
+        return packageName.isEmpty() ? "*" : packageName + ".*";
+    }
+
+    /**
+     * Determines the top-level type an imported name refers to, assuming that type names are capitalized.
+     *
+     * @param name the imported name, e.g. <code>java.util.Map.Entry</code> for <code>java.util.Map</code>.
+     * @param wildcard whether it was an on-demand import (<code>.*</code>).
+     * @return the type, or the package reference of an on-demand import of a package.
+     */
+    static String typeOf (final String name, final boolean wildcard) {
+        final String packageName = packageOf(name, wildcard);
+        final String rest = packageName.isEmpty() ? name : name.substring(Math.min(name.length(), packageName.length() + 1));
+        if (rest.isEmpty()) {
+            return packageReference(packageName);
+        }
+        final int end = rest.indexOf('.');
+        final String type = end < 0 ? rest : rest.substring(0, end);
+        return packageName.isEmpty() ? type : packageName + '.' + type;
+    }
+
+    /**
+     * Determines the package part of an imported name, assuming that type names are capitalized.
+     *
+     * @param name the imported name, e.g. <code>java.util.Map.Entry</code>.
+     * @param wildcard whether it was an on-demand import (<code>.*</code>).
+     */
+    static String packageOf (final String name, final boolean wildcard) {
+        final String[] segments = name.split("\\.");
+        final StringBuilder packageName = new StringBuilder();
+        for (int i = 0; i < segments.length; i++) {
+            final String segment = segments[i];
+            final boolean last = i == segments.length - 1;
+            if (segment.isEmpty() || Character.isUpperCase(segment.charAt(0)) || (last && !wildcard)) {
+                break;
+            }
+            if (packageName.length() > 0) {
+                packageName.append('.');
+            }
+            packageName.append(segment);
+        }
+        return packageName.toString();
+    }
+}
@@ -0,0 +1,100 @@
+package lombok.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A byte-level check of whether a source file may need lombok.
+ * <p>
+ * Lombok only changes files that refer to it, through an import or a qualified name, so a file that does
+ * not contain the identifier <code>lombok</code> (as opposed to, say, <code>projectlombok</code>) comes
+ * out of delombok exactly as it went in.  Files with unicode escapes might spell the identifier in
+ * disguise, so they are always considered to need lombok.
+ */
+final class LombokDetector {
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    private static final byte[] LOMBOK = "lombok".getBytes(US_ASCII);
+
+    /** The identifiers of the lombok features that generate code from other types. */
+    private static final byte[][] DEPENDENT = {
+        "val".getBytes(US_ASCII),
+        "var".getBytes(US_ASCII),
+        "Delegate".getBytes(US_ASCII),
+        "ExtensionMethod".getBytes(US_ASCII),
+        "SuperBuilder".getBytes(US_ASCII),
+    };
+
+    private LombokDetector () {
+    }
+
+    /**
+     * Indicates whether files in the given encoding can be checked byte by byte, i.e. whether it encodes
+     * ASCII like ASCII does.
+     */
+    static boolean supports (final Charset charset) {
+        return Arrays.equals(LOMBOK, "lombok".getBytes(charset)) && Arrays.equals(new byte[] { '\\', 'u' }, "\\u".getBytes(charset));
+    }
+
+    /**
+     * Indicates whether a source file may refer to lombok; <code>false</code> means it certainly does not.
+     */
+    static boolean mayUseLombok (final File source) throws IOException {
+        return contains(source, LOMBOK);
+    }
+
+    /**
+     * Indicates whether the delombok-ed form of a source file may depend on other types, through
+     * <code>val</code>, <code>var</code>, <code>@Delegate</code>, <code>@ExtensionMethod</code> or
+     * <code>@SuperBuilder</code>; <code>false</code> means it certainly does not.
+     */
+    static boolean mayDependOnOtherTypes (final File source) throws IOException {
+        return contains(source, DEPENDENT);
+    }
+
+    /**
+     * Indicates whether a source file contains any of the given identifiers, or a unicode escape.
+     */
+    private static boolean contains (final File source, final byte[]... identifiers) throws IOException {
+        final ByteBuffer bytes = FileBuffers.map(source);
+        final int length = bytes.limit();
+        for (int i = 0; i < length; i++) {
+            if ('\\' == bytes.get(i) && i + 1 < length && 'u' == bytes.get(i + 1)) {
+                return true;
+            }
+            if (0 != i && isIdentifierPart(bytes.get(i - 1))) {
+                continue;
+            }
+            for (final byte[] identifier : identifiers) {
+                if (identifier[0] == bytes.get(i) && matchesAt(bytes, i, identifier)
+                    && (i + identifier.length == length || !isIdentifierPart(bytes.get(i + identifier.length)))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Bytes outside of ASCII may be part of an identifier in any encoding.
+     */
+    private static boolean isIdentifierPart (final byte b) {
+        return b < 0 || Character.isJavaIdentifierPart((char)b);
+    }
+
+    private static boolean matchesAt (final ByteBuffer bytes, final int offset, final byte[] identifier) {
+        if (offset + identifier.length > bytes.limit()) {
+            return false;
+        }
+        for (int i = 1; i < identifier.length; i++) {
+            if (identifier[i] != bytes.get(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,416 @@
+package lombok.maven;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the output files of delombok, optionally only where their content changes, so that their
+ * modification times keep telling the compiler which generated sources are stale.  Files are replaced
+ * atomically.
+ * <p>
+ * Instances are thread-safe and count what they did.  An updater may also put the files into a
+ * {@link SourcesJar} instead of writing them.
+ */
+final class OutputUpdater {
+
+    /** The comment delombok puts on top of every file, unless told not to; it changes with every run. */
+    private static final byte[] DELOMBOK_COMMENT = "// Generated by delombok at ".getBytes(Charset.forName("US-ASCII"));
+
+    /** The initial size of the buffer every writer encodes its files into; it grows to the largest file. */
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final boolean onlyIfChanged;
+
+    /** The jar the files go into instead of their output directories, or <code>null</code>. */
+    private final SourcesJar jar;
+
+    private final AtomicInteger written = new AtomicInteger();
+
+    private final AtomicInteger unchanged = new AtomicInteger();
+
+    private final AtomicInteger deleted = new AtomicInteger();
+
+    private final AtomicInteger passedThrough = new AtomicInteger();
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    private final AtomicLong writeNanos = new AtomicLong();
+
+    private final AtomicLong analyzeNanos = new AtomicLong();
+
+    private final AtomicLong printNanos = new AtomicLong();
+
+    private final AtomicLong backpressureNanos = new AtomicLong();
+
+    private final Map<File, Long> fileNanos = new ConcurrentHashMap<File, Long>();
+
+    /**
+     * @param onlyIfChanged whether files are left alone when they already have the right content.
+     */
+    OutputUpdater (final boolean onlyIfChanged) {
+        this.onlyIfChanged = onlyIfChanged;
+        this.jar = null;
+    }
+
+    /**
+     * @param jar the jar to put the files into; nothing is written to the output directories.
+     */
+    OutputUpdater (final SourcesJar jar) {
+        this.onlyIfChanged = false;
+        this.jar = jar;
+    }
+
+    int getWrittenCount () {
+        return written.get();
+    }
+
+    int getUnchangedCount () {
+        return unchanged.get();
+    }
+
+    int getDeletedCount () {
+        return deleted.get();
+    }
+
+    /**
+     * The number of sources copied as they are, without delombok.
+     */
+    int getPassedThroughCount () {
+        return passedThrough.get();
+    }
+
+    /**
+     * The size of all output files, whether written or unchanged.
+     */
+    long getByteCount () {
+        return bytes.get();
+    }
+
+    /**
+     * The time spent comparing and writing output files, summed over all threads.
+     */
+    long getWriteNanos () {
+        return writeNanos.get();
+    }
+
+    /**
+     * The time delombok took to parse, transform and attribute the sources before it printed the first
+     * one, summed over all writers.
+     */
+    long getAnalyzeNanos () {
+        return analyzeNanos.get();
+    }
+
+    /**
+     * The time delombok took to print the sources, summed over all writers.
+     */
+    long getPrintNanos () {
+        return printNanos.get();
+    }
+
+    /**
+     * The time delombok waited for a pipeline to write files before it could print more, summed over all writers.
+     */
+    long getBackpressureNanos () {
+        return backpressureNanos.get();
+    }
+
+    void addBackpressure (final long nanos) {
+        backpressureNanos.addAndGet(nanos);
+    }
+
+    /**
+     * The time spent printing and writing every output file.
+     */
+    Map<File, Long> getFileNanos () {
+        return fileNanos;
+    }
+
+    /**
+     * Sends the counts and timings of this updater, e.g. from a daemon.
+     */
+    void writeTo (final DataOutputStream out) throws IOException {
+        out.writeInt(written.get());
+        out.writeInt(unchanged.get());
+        out.writeInt(deleted.get());
+        out.writeLong(bytes.get());
+        out.writeLong(writeNanos.get());
+        out.writeLong(analyzeNanos.get());
+        out.writeLong(printNanos.get());
+        out.writeLong(backpressureNanos.get());
+        out.writeInt(fileNanos.size());
+        for (final Map.Entry<File, Long> entry : fileNanos.entrySet()) {
+            out.writeUTF(entry.getKey().getPath());
+            out.writeLong(entry.getValue());
+        }
+    }
+
+    /**
+     * Adds the counts and timings sent by {@link #writeTo(DataOutputStream)}.
+     */
+    void readFrom (final DataInputStream in) throws IOException {
+        written.addAndGet(in.readInt());
+        unchanged.addAndGet(in.readInt());
+        deleted.addAndGet(in.readInt());
+        bytes.addAndGet(in.readLong());
+        writeNanos.addAndGet(in.readLong());
+        analyzeNanos.addAndGet(in.readLong());
+        printNanos.addAndGet(in.readLong());
+        backpressureNanos.addAndGet(in.readLong());
+        for (int files = in.readInt(); files > 0; files--) {
+            fileNanos.put(new File(in.readUTF()), in.readLong());
+        }
+    }
+
+    /**
+     * Replaces the target with the given content, unless only changes are written and it already has
+     * exactly that content.
+     *
+     * @param content the content, from its position to its limit; it is consumed.
+     */
+    void write (final File target, final ByteBuffer content) throws IOException {
+        final long start = System.nanoTime();
+        bytes.addAndGet(content.remaining());
+        if (null != jar) {
+            jar.put(target, content);
+            written.incrementAndGet();
+            writeNanos.addAndGet(System.nanoTime() - start);
+            return;
+        }
+        if (onlyIfChanged && target.isFile() && sameContent(FileBuffers.read(target), content.duplicate())) {
+            unchanged.incrementAndGet();
+            writeNanos.addAndGet(System.nanoTime() - start);
+            return;
+        }
+        final Path temp = getTempFile(target);
+        try {
+            final FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+            try {
+                while (content.hasRemaining()) {
+                    out.write(content);
+                }
+            } finally {
+                out.close();
+            }
+            moveIntoPlace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        written.incrementAndGet();
+        writeNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    /**
+     * A temporary file next to the target, so that moving it into place is a rename.
+     */
+    private static Path getTempFile (final File target) throws IOException {
+        final File parent = target.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        return new File(parent, '.' + target.getName() + '.' + Thread.currentThread().getId() + ".tmp").toPath();
+    }
+
+    private static void moveIntoPlace (final Path temp, final File target) throws IOException {
+        try {
+            Files.move(temp, target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(temp, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Compares two versions of a file, from their positions to their limits, ignoring the time stamp in the
+     * comment delombok generates.
+     */
+    static boolean sameContent (final ByteBuffer a, final ByteBuffer b) {
+        if (startsWith(a, DELOMBOK_COMMENT) && startsWith(b, DELOMBOK_COMMENT)) {
+            a.position(indexOf(a, (byte)'\n'));
+            b.position(indexOf(b, (byte)'\n'));
+        }
+        return a.equals(b);
+    }
+
+    private static boolean startsWith (final ByteBuffer bytes, final byte[] prefix) {
+        if (bytes.remaining() < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes.get(bytes.position() + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf (final ByteBuffer bytes, final byte value) {
+        for (int i = bytes.position(); i < bytes.limit(); i++) {
+            if (bytes.get(i) == value) {
+                return i;
+            }
+        }
+        return bytes.limit();
+    }
+
+    /**
+     * Copies a file to the target, unless only changes are written and the target already has the same content.
+     * The content is transferred by the operating system, without passing through the heap.
+     */
+    void copy (final File source, final File target) throws IOException {
+        if (null != jar) {
+            write(target, FileBuffers.map(source));
+            return;
+        }
+        final long start = System.nanoTime();
+        final FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+        try {
+            final long size = in.size();
+            bytes.addAndGet(size);
+            if (onlyIfChanged && target.isFile() && target.length() == size
+                && FileBuffers.map(source).equals(FileBuffers.read(target))) {
+                unchanged.incrementAndGet();
+                writeNanos.addAndGet(System.nanoTime() - start);
+                return;
+            }
+            final Path temp = getTempFile(target);
+            try {
+                final FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+                try {
+                    long position = 0;
+                    while (position < size) {
+                        final long count = in.transferTo(position, size - position, out);
+                        if (count <= 0) {
+                            // The source shrank while being copied...
+                            break;
+                        }
+                        position += count;
+                    }
+                } finally {
+                    out.close();
+                }
+                moveIntoPlace(temp, target);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } finally {
+            in.close();
+        }
+        written.incrementAndGet();
+        writeNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    /**
+     * Copies a source that does not need delombok to its output, as delombok would have.
+     */
+    void passThrough (final File source, final File target) throws IOException {
+        copy(source, target);
+        passedThrough.incrementAndGet();
+    }
+
+    /**
+     * Deletes a file, if it exists.
+     */
+    void delete (final File target) throws IOException {
+        if (null == jar && Files.deleteIfExists(target.toPath())) {
+            deleted.incrementAndGet();
+        }
+    }
+
+    /**
+     * Creates a writer that delombok can print all its compilation units to.  Delombok closes the writer
+     * after every unit, and prints the units in the order the files were added, so every close completes
+     * the next output file.
+     * <p>
+     * The writer also times delombok: the time until the first character is printed is spent analyzing
+     * the sources, and every file takes the time from the end of the previous one until it is written.
+     *
+     * Every file is encoded straight from the characters delombok printed into a direct buffer, which the
+     * writer reuses for the next files, and written from there, or handed over to a pipeline that writes it
+     * while delombok prints the next files.
+     *
+     * @param outputs the output files, in the order their sources were added to delombok.
+     * @param charset the encoding of the output.
+     * @param pipeline the pipeline that writes the files, or <code>null</code> to write them before returning.
+     */
+    Writer newWriter (final List<File> outputs, final Charset charset, final DelombokPipeline pipeline) {
+        final Iterator<File> iterator = outputs.iterator();
+        final long created = System.nanoTime();
+        return new Writer() {
+            private final StringBuilder buffer = new StringBuilder();
+
+            /** Replaces what cannot be encoded, like {@link String#getBytes(Charset)} does. */
+            private final CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+            private ByteBuffer encoded = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+
+            /** When printing of the current file started, or -1 before the first file. */
+            private long printStart = -1;
+
+            private void startPrinting () {
+                if (printStart < 0) {
+                    printStart = System.nanoTime();
+                    analyzeNanos.addAndGet(printStart - created);
+                }
+            }
+
+            @Override
+            public void write (final char[] chars, final int offset, final int length) {
+                startPrinting();
+                buffer.append(chars, offset, length);
+            }
+
+            @Override
+            public void flush () {
+            }
+
+            @Override
+            public void close () throws IOException {
+                if (!iterator.hasNext()) {
+                    throw new IOException("Delombok printed more files than it was given");
+                }
+                startPrinting();
+                final File output = iterator.next();
+                encoded = FileBuffers.encode(encoder, buffer, encoded);
+                buffer.setLength(0);
+                printNanos.addAndGet(System.nanoTime() - printStart);
+                if (null != pipeline) {
+                    encoded = pipeline.submit(output, encoded);
+                } else {
+                    OutputUpdater.this.write(output, encoded);
+                }
+                final long end = System.nanoTime();
+                fileNanos.put(output, end - printStart);
+                printStart = end;
+            }
+        };
+    }
+
+    @Override
+    public String toString () {
+        return written + " files written, " + unchanged + " unchanged, " + deleted + " deleted"
+            + (passedThrough.get() > 0 ? ", " + passedThrough + " of them copied without delombok" : "");
+    }
+}
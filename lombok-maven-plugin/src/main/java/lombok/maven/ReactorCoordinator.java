@@ -0,0 +1,80 @@
+package lombok.maven;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SessionData;
+
+/**
+ * Schedules the delombok executions of all the modules of a build, which a parallel build runs concurrently.
+ * <p>
+ * Delombok holds the syntax trees of all the files it processes, so a few modules delombok-ing at once on
+ * top of their own sharding can exhaust the heap.  The coordinator hands out a fixed number of workers
+ * for the whole build, and lends its threads to the shards of every module.  There is one
+ * coordinator per Maven session; the shadow class loaders and the package indexes of jars are already
+ * shared through the plugin realm.
+ */
+final class ReactorCoordinator {
+
+    /** Another version of the plugin in the same build, loaded by another realm, gets its own coordinator. */
+    private static final String KEY = ReactorCoordinator.class.getName() + "@" + System.identityHashCode(ReactorCoordinator.class);
+
+    private final int workerCount;
+
+    private final Semaphore availableWorkers;
+
+    private final ExecutorService executor;
+
+    private ReactorCoordinator (final int workerCount) {
+        this.workerCount = workerCount;
+        this.availableWorkers = new Semaphore(workerCount, true);
+        // The workers bound the number of threads; idle threads go away between modules...
+        this.executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+            ShardedDelombok.newThreadFactory());
+    }
+
+    /**
+     * Gets the coordinator of a session, creating it on first use.
+     *
+     * @param workerCount the number of workers of the build; only the first execution of the build decides.
+     */
+    static ReactorCoordinator get (final RepositorySystemSession session, final int workerCount) {
+        final SessionData data = session.getData();
+        ReactorCoordinator coordinator = (ReactorCoordinator)data.get(KEY);
+        while (null == coordinator) {
+            final ReactorCoordinator created = new ReactorCoordinator(workerCount);
+            coordinator = data.set(KEY, null, created) ? created : (ReactorCoordinator)data.get(KEY);
+        }
+        return coordinator;
+    }
+
+    int getWorkerCount () {
+        return workerCount;
+    }
+
+    /**
+     * The threads that run the shards of every module.
+     */
+    ExecutorService getExecutor () {
+        return executor;
+    }
+
+    /**
+     * Waits until the given number of workers are available, or as many as the build has if it has fewer.
+     *
+     * @return the number of workers acquired, to be passed to {@link #release(int)}.
+     */
+    int acquire (final int count) {
+        final int acquired = Math.min(count, workerCount);
+        availableWorkers.acquireUninterruptibly(acquired);
+        return acquired;
+    }
+
+    void release (final int count) {
+        availableWorkers.release(count);
+    }
+}
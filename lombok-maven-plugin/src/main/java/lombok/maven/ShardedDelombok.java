@@ -0,0 +1,254 @@
+package lombok.maven;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.launch.Delombok;
+
+/**
+ * Delomboks a set of source files with several concurrent {@link Delombok} instances.
+ * <p>
+ * The files are partitioned into shards, keeping packages together where possible, and every shard is
+ * processed by its own Delombok with its own shadow class loader, taken from a pool that later executions
+ * reuse.  Each output file is written by exactly one shard, so the result does not depend on scheduling;
+ * the feedback of the shards is buffered and replayed in shard order.
+ */
+final class ShardedDelombok {
+
+    private ShardedDelombok () {
+    }
+
+    /**
+     * Parses a thread count the way Maven parses <code>-T</code>: either a number of threads,
+     * or a multiple of the available cores when suffixed with <code>C</code> (e.g. <code>1C</code>).
+     *
+     * @throws IllegalArgumentException if the value cannot be understood.
+     */
+    static int parseThreads (final String threads) {
+        final String value = threads.trim();
+        final int count;
+        if (value.endsWith("C") || value.endsWith("c")) {
+            final float factor = Float.parseFloat(value.substring(0, value.length() - 1));
+            count = (int)(factor * Runtime.getRuntime().availableProcessors());
+        } else {
+            count = Integer.parseInt(value);
+        }
+        if (count < 1) {
+            throw new IllegalArgumentException("Invalid thread count: " + threads);
+        }
+        return count;
+    }
+
+    /**
+     * Partitions files into at most <code>shardCount</code> shards of similar total size.
+     * <p>
+     * Files of the same package stay in the same shard, unless the package alone is larger than a fair
+     * share, in which case it is split.  The result is deterministic for a given set of files.
+     *
+     * @param sources the source files.
+     * @param shardCount the maximum number of shards.
+     */
+    static List<List<SourceFile>> partition (final List<SourceFile> sources, final int shardCount) {
+        // Group by package, whatever the source set...
+        final Map<String, List<SourceFile>> packages = new TreeMap<String, List<SourceFile>>();
+        long total = 0;
+        for (final SourceFile source : sources) {
+            final String packageName = source.getPackagePath();
+            List<SourceFile> files = packages.get(packageName);
+            if (null == files) {
+                files = new ArrayList<SourceFile>();
+                packages.put(packageName, files);
+            }
+            files.add(source);
+            total += weight(source);
+        }
+
+        // ...splitting packages that are larger than a fair share of the work...
+        final long fairShare = Math.max(1, total / shardCount);
+        final List<Group> groups = new ArrayList<Group>();
+        for (final List<SourceFile> files : packages.values()) {
+            Collections.sort(files);
+            Group group = new Group();
+            for (final SourceFile source : files) {
+                final long weight = weight(source);
+                if (!group.sources.isEmpty() && group.weight + weight > fairShare) {
+                    groups.add(group);
+                    group = new Group();
+                }
+                group.add(source, weight);
+            }
+            groups.add(group);
+        }
+
+        // ...then assign the largest group to the least loaded shard.
+        Collections.sort(groups, new Comparator<Group>() {
+            @Override
+            public int compare (final Group a, final Group b) {
+                if (a.weight != b.weight) {
+                    return a.weight > b.weight ? -1 : 1;
+                }
+                return a.sources.get(0).compareTo(b.sources.get(0));
+            }
+        });
+        final int count = Math.min(shardCount, groups.size());
+        final List<Group> shards = new ArrayList<Group>(count);
+        for (int i = 0; i < count; i++) {
+            shards.add(new Group());
+        }
+        for (final Group group : groups) {
+            Group lightest = shards.get(0);
+            for (final Group shard : shards) {
+                if (shard.weight < lightest.weight) {
+                    lightest = shard;
+                }
+            }
+            for (final SourceFile source : group.sources) {
+                lightest.add(source, 0);
+            }
+            lightest.weight += group.weight;
+        }
+
+        final List<List<SourceFile>> result = new ArrayList<List<SourceFile>>(count);
+        for (final Group shard : shards) {
+            Collections.sort(shard.sources);
+            result.add(shard.sources);
+        }
+        return result;
+    }
+
+    private static long weight (final SourceFile source) {
+        // Empty files still cost something to process...
+        return 1024 + source.getSource().length();
+    }
+
+    private static final class Group {
+        final List<SourceFile> sources = new ArrayList<SourceFile>();
+        long weight;
+
+        void add (final SourceFile source, final long sourceWeight) {
+            sources.add(source);
+            weight += sourceWeight;
+        }
+    }
+
+    /**
+     * Creates the daemon threads that delombok shards.
+     */
+    static ThreadFactory newThreadFactory () {
+        return new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread (final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "delombok-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Delomboks every shard concurrently.  When a shard fails, the shards that did not start yet are skipped,
+     * and the failure is only thrown once the others completed.
+     *
+     * @param settings the settings to apply to every Delombok instance.
+     * @param shards the files to process, as returned by {@link #partition(List, int)}.
+     * @param feedback where to replay the feedback of delombok.
+     * @param updater the updater of the output files.
+     * @param sharedExecutor the threads to run the shards on, or <code>null</code> to start threads for this call only.
+     * @return <code>true</code> if every shard was delombok-ed successfully.
+     */
+    static boolean delombok (final DelombokSettings settings, final List<List<SourceFile>> shards,
+            final PrintStream feedback, final OutputUpdater updater, final ExecutorService sharedExecutor)
+            throws IOException, InvocationTargetException {
+        final ExecutorService executor = null != sharedExecutor
+            ? sharedExecutor
+            : Executors.newFixedThreadPool(shards.size(), newThreadFactory());
+        try {
+            final List<ByteArrayOutputStream> buffers = new ArrayList<ByteArrayOutputStream>(shards.size());
+            final List<Future<Boolean>> results = new ArrayList<Future<Boolean>>(shards.size());
+            // Once a shard failed, the shards that did not start yet are skipped...
+            final AtomicBoolean failed = new AtomicBoolean();
+            for (final List<SourceFile> shard : shards) {
+                final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                buffers.add(buffer);
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call () throws Exception {
+                        if (failed.get()) {
+                            return false;
+                        }
+                        final ClassLoader shadowClassLoader = Delombok.acquireShadowClassLoader();
+                        try {
+                            final Delombok delombok = new Delombok(shadowClassLoader);
+                            settings.applyTo(delombok);
+                            final PrintStream shardFeedback = new PrintStream(buffer, true);
+                            delombok.setFeedback(shardFeedback);
+                            if (settings.verbose) {
+                                shardFeedback.printf("Shard setup took %d ms (%s)%n",
+                                    TimeUnit.NANOSECONDS.toMillis(delombok.getSetupNanos()), delombok.isWarm() ? "warm" : "cold");
+                            }
+                            return settings.delombok(delombok, shard, updater);
+                        } finally {
+                            Delombok.releaseShadowClassLoader(shadowClassLoader);
+                        }
+                    }
+                }));
+            }
+
+            // ...and those that did are waited for, so that none writes once this call failed.
+            boolean success = true;
+            ExecutionException failure = null;
+            int failedShard = 0;
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    success &= results.get(i).get();
+                } catch (final InterruptedException e) {
+                    failed.set(true);
+                    Thread.currentThread().interrupt();
+                    throw new InvocationTargetException(e, "Interrupted while waiting for delombok");
+                } catch (final ExecutionException e) {
+                    failed.set(true);
+                    if (null == failure) {
+                        failure = e;
+                        failedShard = i + 1;
+                    }
+                } finally {
+                    feedback.print(buffers.get(i).toString());
+                }
+            }
+            if (null != failure) {
+                final Throwable cause = failure.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException)cause;
+                }
+                if (cause instanceof InvocationTargetException) {
+                    throw (InvocationTargetException)cause;
+                }
+                throw new InvocationTargetException(cause, "Delombok of shard " + failedShard + " failed");
+            }
+            return success;
+        } finally {
+            if (executor != sharedExecutor) {
+                executor.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package lombok.maven;
+
+import java.io.File;
+
+/**
+ * A source file to delombok, with the directories it is read from and written to.
+ */
+final class SourceFile implements Comparable<SourceFile> {
+
+    final File sourceDirectory;
+
+    /** The path of the file, relative to both directories, using '/' as separator. */
+    final String path;
+
+    final File outputDirectory;
+
+    SourceFile (final File sourceDirectory, final String path, final File outputDirectory) {
+        this.sourceDirectory = sourceDirectory;
+        this.path = path;
+        this.outputDirectory = outputDirectory;
+    }
+
+    File getSource () {
+        return new File(sourceDirectory, path);
+    }
+
+    File getOutput () {
+        return new File(outputDirectory, path);
+    }
+
+    /**
+     * The directory part of the path, which identifies the package of the file.
+     */
+    String getPackagePath () {
+        return path.substring(0, path.lastIndexOf('/') + 1);
+    }
+
+    @Override
+    public int compareTo (final SourceFile other) {
+        final int result = path.compareTo(other.path);
+        return 0 != result ? result : sourceDirectory.compareTo(other.sourceDirectory);
+    }
+
+    @Override
+    public boolean equals (final Object other) {
+        if (!(other instanceof SourceFile)) {
+            return false;
+        }
+        final SourceFile that = (SourceFile)other;
+        return path.equals(that.path) && sourceDirectory.equals(that.sourceDirectory) && outputDirectory.equals(that.outputDirectory);
+    }
+
+    @Override
+    public int hashCode () {
+        return 31 * path.hashCode() + sourceDirectory.hashCode();
+    }
+
+    @Override
+    public String toString () {
+        return path;
+    }
+}
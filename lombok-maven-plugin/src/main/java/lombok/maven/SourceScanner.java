@@ -0,0 +1,139 @@
+package lombok.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Finds the files of a directory tree that match include and exclude patterns.
+ * <p>
+ * Patterns are globs relative to the directory, in the spirit of Maven's: <code>*</code> matches within a
+ * directory, <code>**</code> across directories, a leading <code>**&#47;</code> also matches at the top,
+ * and a trailing <code>/</code> stands for everything below.  Without includes every file is included.
+ * Directories that an exclude pattern covers entirely are not even walked.
+ */
+final class SourceScanner {
+
+    /** Finds every file. */
+    static final SourceScanner ALL = new SourceScanner(null, null);
+
+    private final List<PathMatcher> includes;
+
+    private final List<PathMatcher> excludes;
+
+    /** Matches the directories whose whole content is excluded. */
+    private final List<PathMatcher> excludedDirectories;
+
+    /**
+     * @param includes the patterns of the files to find; <code>null</code> or empty for every file.
+     * @param excludes the patterns of the files to leave out; may be <code>null</code>.
+     * @throws IllegalArgumentException if a pattern is invalid.
+     */
+    SourceScanner (final List<String> includes, final List<String> excludes) {
+        this.includes = new ArrayList<PathMatcher>();
+        this.excludes = new ArrayList<PathMatcher>();
+        this.excludedDirectories = new ArrayList<PathMatcher>();
+        final FileSystem fileSystem = FileSystems.getDefault();
+        if (null != includes) {
+            for (final String include : includes) {
+                addMatchers(fileSystem, include, this.includes);
+            }
+        }
+        if (null != excludes) {
+            for (final String exclude : excludes) {
+                final String pattern = normalize(exclude);
+                addMatchers(fileSystem, exclude, this.excludes);
+                if (pattern.endsWith("/**")) {
+                    addMatchers(fileSystem, pattern.substring(0, pattern.length() - 3), this.excludedDirectories);
+                }
+            }
+        }
+    }
+
+    private static String normalize (final String pattern) {
+        final String normalized = pattern.trim().replace('\\', '/');
+        return normalized.endsWith("/") ? normalized + "**" : normalized;
+    }
+
+    private static void addMatchers (final FileSystem fileSystem, final String pattern, final List<PathMatcher> matchers) {
+        final String normalized = normalize(pattern);
+        matchers.add(fileSystem.getPathMatcher("glob:" + normalized));
+        if (normalized.startsWith("**/")) {
+            // Unlike a glob, "**/" may match nothing at all...
+            matchers.add(fileSystem.getPathMatcher("glob:" + normalized.substring(3)));
+        }
+    }
+
+    /**
+     * Indicates whether some files may be left out.
+     */
+    boolean isFiltering () {
+        return !includes.isEmpty() || !excludes.isEmpty();
+    }
+
+    /**
+     * Lists the matching files of a directory.
+     *
+     * @return the paths relative to the directory, using '/' as separator, sorted; empty if the directory
+     *     does not exist.
+     */
+    List<String> scan (final File directory) throws IOException {
+        final List<String> paths = new ArrayList<String>();
+        if (!directory.isDirectory()) {
+            return paths;
+        }
+        final Path root = directory.toPath();
+        // Like java.io.File, follow symbolic links...
+        Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory (final Path dir, final BasicFileAttributes attributes) {
+                return dir.equals(root) || !matches(excludedDirectories, root.relativize(dir))
+                    ? FileVisitResult.CONTINUE
+                    : FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile (final Path file, final BasicFileAttributes attributes) {
+                if (attributes.isRegularFile()) {
+                    final Path path = root.relativize(file);
+                    if ((includes.isEmpty() || matches(includes, path)) && !matches(excludes, path)) {
+                        paths.add(path.toString().replace(File.separatorChar, '/'));
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed (final Path file, final IOException e) throws IOException {
+                if (e instanceof FileSystemLoopException) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw e;
+            }
+        });
+        Collections.sort(paths);
+        return paths;
+    }
+
+    private static boolean matches (final List<PathMatcher> matchers, final Path path) {
+        for (final PathMatcher matcher : matchers) {
+            if (matcher.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
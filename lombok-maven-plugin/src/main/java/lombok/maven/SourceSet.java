@@ -0,0 +1,36 @@
+package lombok.maven;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A directory of lombok sources and the directory its delombok-ed sources go to.
+ */
+final class SourceSet {
+
+    /** Distinguishes the source sets of one execution, e.g. <code>main</code> or <code>test</code>. */
+    final String id;
+
+    final File sourceDirectory;
+
+    final File outputDirectory;
+
+    SourceSet (final String id, final File sourceDirectory, final File outputDirectory) {
+        this.id = id;
+        this.sourceDirectory = sourceDirectory;
+        this.outputDirectory = outputDirectory;
+    }
+
+    SourceFile file (final String path) {
+        return new SourceFile(sourceDirectory, path, outputDirectory);
+    }
+
+    List<SourceFile> files (final List<String> paths) {
+        final List<SourceFile> files = new ArrayList<SourceFile>(paths.size());
+        for (final String path : paths) {
+            files.add(file(path));
+        }
+        return files;
+    }
+}
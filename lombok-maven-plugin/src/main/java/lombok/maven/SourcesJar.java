@@ -0,0 +1,302 @@
+package lombok.maven;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A jar that delombok-ed files are written into instead of their output directories, so that a sources jar
+ * does not take writing every file to disk and reading it back.
+ * <p>
+ * Every file is put into the jar under its path relative to its output directory.  The jar is reproducible:
+ * files are streamed, in the order they come, into a temporary zip next to the jar, and copied from there
+ * into the jar in the order of their names when it is committed, all with the same time, so that identical
+ * sources always make an identical jar.  Files of other source roots are read from where they are at that
+ * point.  Only the names of the entries are kept in memory.
+ */
+final class SourcesJar {
+
+    /** The earliest time a zip entry can hold, used when the build does not set one. */
+    static final long DEFAULT_TIME = 315532802000L;
+
+    private static final String MANIFEST_DIRECTORY = "META-INF/";
+
+    private final File file;
+
+    /** The absolute paths of the output directories, each ending with a separator. */
+    private final List<String> roots = new ArrayList<String>();
+
+    private final long time;
+
+    /** The names of the entries of the temporary zip, by entry name. */
+    private final SortedMap<String, String> staged = new TreeMap<String, String>();
+
+    /** The files of other source roots, by entry name. */
+    private final SortedMap<String, File> files = new TreeMap<String, File>();
+
+    private File stagingFile;
+
+    private int stagedCount;
+
+    private ZipOutputStream staging;
+
+    private boolean closed;
+
+    /**
+     * @param file the jar.
+     * @param outputDirectories the output directories the files would have been written to.
+     * @param time the time of every entry, in milliseconds since the epoch.
+     */
+    SourcesJar (final File file, final List<File> outputDirectories, final long time) {
+        this.file = file;
+        for (final File directory : outputDirectories) {
+            roots.add(directory.getAbsolutePath() + File.separatorChar);
+        }
+        this.time = time;
+    }
+
+    /**
+     * Parses the <code>project.build.outputTimestamp</code> property, either an ISO-8601 date and time with an
+     * offset or a number of seconds since the epoch.
+     *
+     * @return the time in milliseconds, or {@link #DEFAULT_TIME} if the property is not set.
+     * @throws IllegalArgumentException if the timestamp cannot be understood.
+     */
+    static long parseTimestamp (final String timestamp) {
+        // Like the maven-archiver, a single character disables the timestamp...
+        if (null == timestamp || timestamp.trim().length() < 2) {
+            return DEFAULT_TIME;
+        }
+        final String value = timestamp.trim();
+        if (value.matches("\\d+")) {
+            return Long.parseLong(value) * 1000L;
+        }
+        try {
+            return OffsetDateTime.parse(value).toInstant().toEpochMilli();
+        } catch (final DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid timestamp: " + value, e);
+        }
+    }
+
+    File getFile () {
+        return file;
+    }
+
+    synchronized int getEntryCount () {
+        return staged.size() + files.size();
+    }
+
+    /**
+     * Puts a file into the jar.
+     *
+     * @param target where the file would have been written.
+     * @param content the content, from its position to its limit; it is consumed.
+     */
+    synchronized void put (final File target, final ByteBuffer content) throws IOException {
+        final String name = getEntryName(target);
+        if (closed) {
+            throw new IOException("The sources jar is closed: " + file);
+        }
+        if (null == staging) {
+            final File parent = file.getAbsoluteFile().getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Unable to create directory " + parent);
+            }
+            stagingFile = Files.createTempFile(parent.toPath(), '.' + file.getName(), ".staging").toFile();
+            staging = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(stagingFile)));
+            // The entries are compressed once, when copied into the jar...
+            staging.setLevel(Deflater.NO_COMPRESSION);
+        }
+        // A file put again replaces the previous one, which stays in the temporary zip under its own name...
+        final String stagedName = Integer.toString(stagedCount++) + '-' + name;
+        staging.putNextEntry(new ZipEntry(stagedName));
+        if (content.hasArray()) {
+            staging.write(content.array(), content.arrayOffset() + content.position(), content.remaining());
+            content.position(content.limit());
+        } else {
+            final byte[] buffer = new byte[Math.min(content.remaining(), 8192)];
+            while (content.hasRemaining()) {
+                final int length = Math.min(buffer.length, content.remaining());
+                content.get(buffer, 0, length);
+                staging.write(buffer, 0, length);
+            }
+        }
+        staging.closeEntry();
+        staged.put(name, stagedName);
+        files.remove(name);
+    }
+
+    /**
+     * Puts the files of a directory into the jar, except those whose names it already holds.
+     *
+     * @return the number of files put into the jar.
+     */
+    synchronized int putDirectory (final File directory) throws IOException {
+        int count = 0;
+        for (final String path : SourceScanner.ALL.scan(directory)) {
+            if (!staged.containsKey(path) && !files.containsKey(path)) {
+                files.put(path, new File(directory, path));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private String getEntryName (final File target) throws IOException {
+        final String path = target.getAbsolutePath();
+        for (final String root : roots) {
+            if (path.startsWith(root)) {
+                return path.substring(root.length()).replace(File.separatorChar, '/');
+            }
+        }
+        throw new IOException("Not in an output directory: " + target);
+    }
+
+    /**
+     * Writes the jar and moves it into place.
+     */
+    synchronized void commit () throws IOException {
+        closed = true;
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        final Path temp = Files.createTempFile(parent.toPath(), '.' + file.getName(), ".tmp");
+        try {
+            if (null != staging) {
+                staging.close();
+            }
+            final ZipFile stagedZip = null != stagingFile ? new ZipFile(stagingFile) : null;
+            try {
+                final JarOutputStream out = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(temp.toFile())));
+                try {
+                    // The manifest goes first, as the JarInputStream expects...
+                    putEntry(out, MANIFEST_DIRECTORY, null);
+                    final Manifest manifest = new Manifest();
+                    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+                    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    manifest.write(bytes);
+                    putEntry(out, JarFile.MANIFEST_NAME, new ByteArrayInputStream(bytes.toByteArray()));
+
+                    // Directories sort right before their files...
+                    final SortedSet<String> names = new TreeSet<String>(staged.keySet());
+                    names.addAll(files.keySet());
+                    for (final String name : new ArrayList<String>(names)) {
+                        for (int end = name.indexOf('/'); end >= 0; end = name.indexOf('/', end + 1)) {
+                            names.add(name.substring(0, end + 1));
+                        }
+                    }
+                    names.remove(MANIFEST_DIRECTORY);
+                    names.remove(JarFile.MANIFEST_NAME);
+                    for (final String name : names) {
+                        final String stagedName = staged.get(name);
+                        final File source = files.get(name);
+                        if (null != stagedName) {
+                            final InputStream in = stagedZip.getInputStream(stagedZip.getEntry(stagedName));
+                            try {
+                                putEntry(out, name, in);
+                            } finally {
+                                in.close();
+                            }
+                        } else if (null != source) {
+                            final InputStream in = new FileInputStream(source);
+                            try {
+                                putEntry(out, name, in);
+                            } finally {
+                                in.close();
+                            }
+                        } else {
+                            putEntry(out, name, null);
+                        }
+                    }
+                } finally {
+                    out.close();
+                }
+            } finally {
+                if (null != stagedZip) {
+                    stagedZip.close();
+                }
+            }
+            try {
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+            deleteStaging();
+        }
+    }
+
+    private void putEntry (final JarOutputStream out, final String name, final InputStream content) throws IOException {
+        final JarEntry entry = new JarEntry(name);
+        // Zip entries hold a local time, so that the time is shifted to read the same in every time zone...
+        entry.setTime(time - TimeZone.getDefault().getOffset(time));
+        out.putNextEntry(entry);
+        if (null != content) {
+            final byte[] buffer = new byte[8192];
+            for (int length; (length = content.read(buffer)) > 0;) {
+                out.write(buffer, 0, length);
+            }
+        }
+        out.closeEntry();
+    }
+
+    /**
+     * Discards the jar, unless it was committed; the previous jar, if any, is left alone.
+     */
+    synchronized void abort () {
+        if (!closed) {
+            closed = true;
+            try {
+                if (null != staging) {
+                    staging.close();
+                }
+            } catch (final IOException e) {
+                // Deleted anyway...
+            }
+            try {
+                deleteStaging();
+            } catch (final IOException e) {
+                // Left behind as a hidden temporary file...
+            }
+            staged.clear();
+            files.clear();
+        }
+    }
+
+    private void deleteStaging () throws IOException {
+        if (null != stagingFile) {
+            Files.deleteIfExists(stagingFile.toPath());
+            stagingFile = null;
+        }
+    }
+}
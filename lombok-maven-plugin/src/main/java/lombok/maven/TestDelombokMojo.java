@@ -1,6 +1,7 @@
 package lombok.maven;
 
 import java.io.File;
+import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
@@ -53,6 +54,11 @@ public class TestDelombokMojo extends AbstractDelombokMojo {
       );
     }
 
+    @Override
+    List<String> getSourcesJarRoots () {
+        return project.getTestCompileSourceRoots();
+    }
+
     @Override
     protected void addSourceRoot(final String path) {
         project.addTestCompileSourceRoot(path);
@@ -0,0 +1,83 @@
+package lombok.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class AbiFingerprintTest {
+
+    private static void assertSameApi (final String a, final String b) {
+        assertEquals(AbiFingerprint.signature(a), AbiFingerprint.signature(b));
+    }
+
+    private static void assertOtherApi (final String a, final String b) {
+        assertNotEquals(AbiFingerprint.signature(a), AbiFingerprint.signature(b));
+    }
+
+    @Test
+    public void ignoresBodies () {
+        assertSameApi("class A { int f() { return 1; } A() { super(); } static { init(); } { init(); } }",
+            "class A { int f() { return 2; } A() { this(1); } static { other(); } { other(); } }");
+        assertOtherApi("class A { int f() { return 1; } }", "class A { long f() { return 1; } }");
+    }
+
+    @Test
+    public void ignoresPrivateMembers () {
+        assertSameApi("class A { private int x; private void f() {} private static class B { int y; } }",
+            "class A { private long x; private void g(int y) {} private static class B { long y; } }");
+        assertOtherApi("class A { int x; }", "class A { long x; }");
+        assertOtherApi("class A { static class B { int y; } }", "class A { static class B { long y; } }");
+    }
+
+    @Test
+    public void keepsFieldInitializers () {
+        assertOtherApi("class A { static final int X = 1; }", "class A { static final int X = 2; }");
+        assertSameApi("class A { private static final int X = 1; }", "class A { private static final int X = 2; }");
+    }
+
+    @Test
+    public void ignoresComments () {
+        assertSameApi("class A { /** Doc. */ int x; // note\n }", "class A {\n  /* Other. */\n  int x;\n}");
+    }
+
+    @Test
+    public void readsTextBlocks () {
+        assertEquals(Arrays.asList("String", "s", "=", "\"\"\"\n  a \\\"\"\" b\n  \"\"\"", ";"),
+            AbiFingerprint.tokenize("String s = \"\"\"\n  a \\\"\"\" b\n  \"\"\";"));
+        assertOtherApi("class A { static final String S = \"\"\"\n  a \\\"\"\" }\n  \"\"\"; int x; }",
+            "class A { static final String S = \"\"\"\n  a \\\"\"\" }\n  \"\"\"; long x; }");
+    }
+
+    @Test
+    public void keepsAnnotationElementsAndDefaults () {
+        assertOtherApi("@interface A { String[] value() default {}; }", "@interface A { String[] value() default {\"a\"}; }");
+        assertOtherApi("@interface A { int value() default 1; }", "@interface A { int value() default 2; }");
+        assertTrue(AbiFingerprint.signature("@interface A { String[] value() default {}; int other(); }").contains("other"));
+    }
+
+    @Test
+    public void keepsAnonymousClassesOfInitializers () {
+        // Conservative: the body of an anonymous class in an initializer is part of the initializer...
+        assertOtherApi("class A { Runnable r = new Runnable() { public void run() { f(); } }; }",
+            "class A { Runnable r = new Runnable() { public void run() { g(); } }; }");
+    }
+
+    @Test
+    public void keepsEnumConstants () {
+        assertOtherApi("enum E { A, B; void f() {} }", "enum E { A, C; void f() {} }");
+        assertSameApi("enum E { A { void f() {} }, B; int g() { return 1; } }",
+            "enum E { A { void f() {} }, B; int g() { return 2; } }");
+        assertOtherApi("enum E { A(1), B(2); E(int x) {} }", "enum E { A(1), B(3); E(int x) {} }");
+    }
+
+    @Test
+    public void keepsTypeParameters () {
+        assertOtherApi("class A<T> { <U extends T> U f(java.util.List<? super U> x) { return null; } }",
+            "class A<T> { <U extends T> U f(java.util.List<? extends U> x) { return null; } }");
+        assertOtherApi("class A<T extends Number> {}", "class A<T> {}");
+    }
+}
@@ -0,0 +1,108 @@
+package lombok.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ClasspathIndexTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Artifact artifact (final String id, final String packageName, final String... parents) throws IOException {
+        final Artifact artifact = new DefaultArtifact("g", id, "1", "compile", "jar", null, new DefaultArtifactHandler("jar"));
+        final File jar = new File(folder.getRoot(), id + ".jar");
+        final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(new ZipEntry(packageName.replace('.', '/') + "/Type.class"));
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+        artifact.setFile(jar);
+        final List<String> trail = new ArrayList<String>();
+        trail.add("g:project:jar:1");
+        for (final String parent : parents) {
+            trail.add("g:" + parent + ":jar:1");
+        }
+        trail.add(artifact.getId());
+        artifact.setDependencyTrail(trail);
+        return artifact;
+    }
+
+    private static List<String> ids (final List<Artifact> artifacts) {
+        final List<String> ids = new ArrayList<String>();
+        for (final Artifact artifact : artifacts) {
+            ids.add(artifact.getArtifactId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void keepsReferredJarsAndTheirDependencies () throws IOException {
+        final List<Artifact> dependencies = Arrays.asList(
+            artifact("api", "org.api"),
+            artifact("base", "org.base", "api"),
+            artifact("deeper", "org.deeper", "api", "base"),
+            artifact("unused", "org.unused"),
+            artifact("unusedChild", "org.unused.child", "unused"));
+        final List<Artifact> pruned = new ClasspathIndex(null).prune(dependencies, new HashSet<String>(Arrays.asList("org.api")));
+        assertEquals(Arrays.asList("api", "base", "deeper"), ids(pruned));
+    }
+
+    @Test
+    public void keepsDirectories () throws IOException {
+        final Artifact classes = artifact("module", "org.module");
+        classes.setFile(folder.newFolder("classes"));
+        final Artifact child = artifact("child", "org.child", "module");
+        final List<Artifact> pruned = new ClasspathIndex(null).prune(Arrays.asList(classes, child), Collections.<String>emptySet());
+        assertEquals(Arrays.asList("module", "child"), ids(pruned));
+    }
+
+    @Test
+    public void keepsEveryIndexFileApart () throws IOException {
+        final File api = artifact("api", "org.api").getFile();
+        final File base = artifact("base", "org.base").getFile();
+        final File firstFile = new File(folder.getRoot(), "first.index");
+        final File secondFile = new File(folder.getRoot(), "second.index");
+
+        final ClasspathIndex first = new ClasspathIndex(firstFile);
+        first.load();
+        first.packagesOf(api);
+        first.store();
+        final ClasspathIndex second = new ClasspathIndex(secondFile);
+        second.load();
+        second.packagesOf(base);
+        second.packagesOf(api);
+        second.store();
+        // What the first index learned is not the second's...
+        assertEquals(2, second.getOpenedCount());
+        assertEquals(0, second.getReusedCount());
+
+        final String firstContent = new String(Files.readAllBytes(firstFile.toPath()), TestFiles.UTF_8);
+        assertTrue(firstContent.contains(ClasspathIndex.fingerprint(api)));
+        assertFalse(firstContent.contains(ClasspathIndex.fingerprint(base)));
+        final String secondContent = new String(Files.readAllBytes(secondFile.toPath()), TestFiles.UTF_8);
+        assertTrue(secondContent.contains(ClasspathIndex.fingerprint(base)));
+        assertFalse(new File(folder.getRoot(), "second.index.tmp").exists());
+    }
+}
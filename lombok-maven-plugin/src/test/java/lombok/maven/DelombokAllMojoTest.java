@@ -0,0 +1,21 @@
+package lombok.maven;
+
+import java.io.File;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DelombokAllMojoTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(expected = MojoExecutionException.class)
+    public void rejectsASourcesJar () throws MojoExecutionException {
+        final DelombokAllMojo mojo = new DelombokAllMojo();
+        mojo.sourcesJar = new File(folder.getRoot(), "sources.jar");
+        mojo.execute();
+    }
+}
@@ -0,0 +1,113 @@
+package lombok.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DelombokCacheTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File cacheDirectory;
+
+    private File sourceDirectory;
+
+    private File outputDirectory;
+
+    @Before
+    public void layOut () throws IOException {
+        cacheDirectory = folder.newFolder("cache");
+        sourceDirectory = folder.newFolder("src");
+        outputDirectory = folder.newFolder("out");
+    }
+
+    @Test
+    public void parsesSizes () {
+        assertEquals(10L, DelombokCache.parseSize("10"));
+        assertEquals(2048L, DelombokCache.parseSize("2k"));
+        assertEquals(512L << 20, DelombokCache.parseSize("512M"));
+        assertEquals(2L << 30, DelombokCache.parseSize(" 2 G "));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void rejectsUnknownSizes () {
+        DelombokCache.parseSize("2T");
+    }
+
+    @Test
+    public void keysDependOnContentAndFingerprint () throws IOException {
+        final File a = TestFiles.write(sourceDirectory, "A.java", "class A {}");
+        final File b = TestFiles.write(sourceDirectory, "b/A.java", "class A {}");
+        final File c = TestFiles.write(sourceDirectory, "C.java", "class C {}");
+        final DelombokCache cache = new DelombokCache(cacheDirectory, 1024, "f");
+        assertEquals(cache.key(a), cache.key(b));
+        assertNotEquals(cache.key(a), cache.key(c));
+        assertNotEquals(cache.key(a), new DelombokCache(cacheDirectory, 1024, "g").key(a));
+    }
+
+    @Test
+    public void keysDependOnTheContentOfTheConfigs () throws IOException {
+        final File a = TestFiles.write(sourceDirectory, "a/A.java", "class A {}");
+        final File b = TestFiles.write(sourceDirectory, "b/A.java", "class A {}");
+        final File c = TestFiles.write(sourceDirectory, "c/A.java", "class A {}");
+        TestFiles.write(sourceDirectory, "a/lombok.config", "lombok.accessors.fluent = true\n");
+        TestFiles.write(sourceDirectory, "b/lombok.config", "lombok.accessors.fluent = true\n");
+        TestFiles.write(sourceDirectory, "c/lombok.config", "lombok.accessors.chain = true\n");
+        final DelombokCache cache = new DelombokCache(cacheDirectory, 1024, "f");
+        assertEquals(cache.key(a), cache.key(b));
+        assertNotEquals(cache.key(a), cache.key(c));
+
+        final String before = new DelombokCache(cacheDirectory, 1024, "f").key(a);
+        TestFiles.write(sourceDirectory, "lombok.config", "lombok.accessors.prefix += m_\n");
+        assertNotEquals(before, new DelombokCache(cacheDirectory, 1024, "f").key(a));
+    }
+
+    @Test
+    public void restoresStoredOutputs () throws IOException {
+        final File source = TestFiles.write(sourceDirectory, "A.java", "class A {}");
+        final File output = TestFiles.write(outputDirectory, "A.java", "class A { A() {} }");
+        final DelombokCache cache = new DelombokCache(cacheDirectory, 1024, "f");
+        final String key = cache.key(source);
+        final File target = new File(folder.getRoot(), "restored/A.java");
+        assertFalse(cache.restore(key, target, new OutputUpdater(false)));
+        cache.store(key, output);
+        assertTrue(cache.restore(key, target, new OutputUpdater(false)));
+        assertEquals("class A { A() {} }", TestFiles.read(target));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntries () throws IOException {
+        final DelombokCache cache = new DelombokCache(cacheDirectory, 250, "f");
+        final String[] keys = new String[3];
+        for (int i = 0; i < keys.length; i++) {
+            final File source = TestFiles.write(sourceDirectory, "S" + i + ".java", "class S" + i + " {}");
+            final StringBuilder content = new StringBuilder();
+            while (content.length() < 100) {
+                content.append("// padding\n");
+            }
+            keys[i] = cache.key(source);
+            cache.store(keys[i], TestFiles.write(outputDirectory, "S" + i + ".java", content.toString()));
+        }
+        // Make the first entry the most recently used...
+        final OutputUpdater updater = new OutputUpdater(false);
+        for (int i = 0; i < keys.length; i++) {
+            final File entry = new File(new File(cacheDirectory, keys[i].substring(0, 2)), keys[i] + ".java");
+            assertTrue(entry.setLastModified(1000000L * (0 == i ? 10 : i)));
+        }
+        assertEquals(1, cache.evict());
+        assertTrue(cache.restore(keys[0], new File(folder.getRoot(), "0.java"), updater));
+        assertFalse(cache.restore(keys[1], new File(folder.getRoot(), "1.java"), updater));
+        assertTrue(cache.restore(keys[2], new File(folder.getRoot(), "2.java"), updater));
+        assertEquals(0, cache.evict());
+    }
+}
@@ -0,0 +1,111 @@
+package lombok.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DelombokManifestTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File sourceDirectory;
+
+    private File manifestFile;
+
+    @Before
+    public void layOut () throws IOException {
+        sourceDirectory = folder.newFolder("src");
+        manifestFile = new File(folder.getRoot(), "delombok.manifest");
+        TestFiles.write(sourceDirectory, "a/A.java", "package a;\nimport lombok.Data;\nimport b.B;\n@Data class A { B b; }\n");
+        TestFiles.write(sourceDirectory, "b/B.java", "package b;\npublic class B {}\n");
+        TestFiles.write(sourceDirectory, "b/notes.txt", "notes");
+    }
+
+    private DelombokManifest scan (final String fingerprint, final DelombokManifest previous) throws IOException {
+        return DelombokManifest.scan(sourceDirectory, SourceScanner.ALL, fingerprint, previous, true);
+    }
+
+    @Test
+    public void recordsLombokUseAndReferencesOfJavaFiles () throws IOException {
+        final DelombokManifest manifest = scan("f", null);
+        final DelombokManifest.Entry a = manifest.getEntries().get("a/A.java");
+        assertTrue(a.lombok);
+        assertTrue(a.references.contains("a.*"));
+        assertTrue(a.references.contains("b.B"));
+        assertFalse(manifest.getEntries().get("b/B.java").lombok);
+        assertTrue(manifest.getEntries().get("b/B.java").references.contains("b.*"));
+        assertFalse(manifest.getEntries().get("b/notes.txt").lombok);
+        assertTrue(manifest.getEntries().get("b/notes.txt").references.isEmpty());
+    }
+
+    @Test
+    public void recordsWhetherTheOutputDependsOnOtherTypes () throws IOException {
+        TestFiles.write(sourceDirectory, "c/C.java", "package c;\nclass C { @lombok.experimental.Delegate b.B b; }\n");
+        scan("f", null).write(manifestFile);
+        final DelombokManifest manifest = DelombokManifest.read(manifestFile);
+        assertNotNull(manifest);
+        assertTrue(manifest.getEntries().get("c/C.java").dependent);
+        assertFalse(manifest.getEntries().get("a/A.java").dependent);
+        assertFalse(manifest.getEntries().get("b/B.java").dependent);
+    }
+
+    @Test
+    public void everythingChangedWithoutPreviousManifest () throws IOException {
+        assertEquals(Arrays.asList("a/A.java", "b/B.java", "b/notes.txt"), scan("f", null).getChangedPaths(null));
+    }
+
+    @Test
+    public void roundTripsAndFindsChanges () throws IOException {
+        scan("f", null).write(manifestFile);
+        final DelombokManifest previous = DelombokManifest.read(manifestFile);
+        assertNotNull(previous);
+        assertEquals("f", previous.getFingerprint());
+        assertTrue(previous.getEntries().get("a/A.java").references.contains("b.B"));
+
+        assertEquals(Collections.emptyList(), scan("f", previous).getChangedPaths(previous));
+
+        TestFiles.write(sourceDirectory, "b/B.java", "package b;\npublic class B { int x; }\n");
+        assertTrue(new File(sourceDirectory, "b/notes.txt").delete());
+        TestFiles.write(sourceDirectory, "c/C.java", "package c;\nclass C {}\n");
+        final DelombokManifest current = scan("f", previous);
+        assertEquals(Arrays.asList("b/B.java", "c/C.java"), current.getChangedPaths(previous));
+        assertEquals(Collections.singletonList("b/notes.txt"), current.getRemovedPaths(previous));
+    }
+
+    @Test
+    public void touchedButIdenticalFilesAreUnchanged () throws IOException {
+        final DelombokManifest previous = scan("f", null);
+        final File b = new File(sourceDirectory, "b/B.java");
+        assertTrue(b.setLastModified(b.lastModified() + 10000));
+        assertEquals(Collections.emptyList(), scan("f", previous).getChangedPaths(previous));
+    }
+
+    @Test
+    public void anotherFingerprintChangesEverything () throws IOException {
+        final DelombokManifest previous = scan("f", null);
+        assertEquals(3, scan("g", previous).getChangedPaths(previous).size());
+    }
+
+    @Test
+    public void ignoresManifestsOfOtherVersions () throws IOException {
+        scan("f", null).write(manifestFile);
+        final String content = TestFiles.read(manifestFile);
+        Files.write(manifestFile.toPath(), content.replaceFirst("manifest \\d+", "manifest 1").getBytes(TestFiles.UTF_8));
+        assertNull(DelombokManifest.read(manifestFile));
+        assertNull(DelombokManifest.read(new File(folder.getRoot(), "missing.manifest")));
+    }
+}
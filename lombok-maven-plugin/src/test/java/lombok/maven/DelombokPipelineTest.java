@@ -0,0 +1,46 @@
+package lombok.maven;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DelombokPipelineTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static ByteBuffer bytes (final String content) {
+        return ByteBuffer.wrap(content.getBytes(TestFiles.UTF_8));
+    }
+
+    @Test
+    public void writesEverySubmittedFile () throws IOException {
+        final OutputUpdater updater = new OutputUpdater(false);
+        final DelombokPipeline pipeline = DelombokPipeline.start(updater, 1);
+        for (int i = 0; i < 5; i++) {
+            pipeline.submit(new File(folder.getRoot(), "a/A" + i + ".java"), bytes("class A" + i + " {}"));
+        }
+        pipeline.finish();
+        pipeline.cancel();
+        assertEquals(5, updater.getWrittenCount());
+        assertEquals("class A4 {}", TestFiles.read(new File(folder.getRoot(), "a/A4.java")));
+    }
+
+    @Test(expected = IOException.class)
+    public void reportsWriteFailures () throws IOException {
+        final File blocked = folder.newFile("blocked");
+        final DelombokPipeline pipeline = DelombokPipeline.start(new OutputUpdater(false), 1);
+        try {
+            pipeline.submit(new File(blocked, "A.java"), bytes("class A {}"));
+            pipeline.finish();
+        } finally {
+            pipeline.cancel();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package lombok.maven;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DependencyGraphTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private SourceSet sourceSet;
+
+    @Before
+    public void layOut () throws IOException {
+        final File sourceDirectory = folder.newFolder("src");
+        sourceSet = new SourceSet("main", sourceDirectory, folder.newFolder("out"));
+        TestFiles.write(sourceDirectory, "a/A.java", "package a;\nimport b.B;\nclass A { @lombok.experimental.Delegate B b; }\n");
+        TestFiles.write(sourceDirectory, "b/B.java", "package b;\nimport c.C;\npublic class B extends C {}\n");
+        TestFiles.write(sourceDirectory, "c/C.java", "package c;\npublic class C { public void run() {} }\n");
+        TestFiles.write(sourceDirectory, "d/sub/D.java", "package d.sub;\n@lombok.Data class D { int x; }\n");
+        TestFiles.write(sourceDirectory, "d/E.java", "package d;\n@lombok.Data class E { int x; }\n");
+    }
+
+    private DependencyGraph graph () throws IOException {
+        final DependencyGraph graph = new DependencyGraph();
+        graph.add(sourceSet, DelombokManifest.scan(sourceSet.sourceDirectory, SourceScanner.ALL, "f", null, true));
+        return graph;
+    }
+
+    private static Set<String> paths (final Set<SourceFile> files) {
+        final Set<String> paths = new HashSet<String>();
+        for (final SourceFile file : files) {
+            paths.add(file.path);
+        }
+        return paths;
+    }
+
+    @Test
+    public void followsFilesWithoutLombok () throws IOException {
+        final DependencyGraph graph = graph();
+        graph.change(sourceSet.file("c/C.java"));
+        assertEquals(Collections.singleton("a/A.java"), paths(graph.getAffected()));
+    }
+
+    @Test
+    public void leavesFilesThatDoNotDependOnOtherTypesAlone () throws IOException {
+        TestFiles.write(sourceSet.sourceDirectory, "d/F.java", "package d;\npublic class F { public int y; }\n");
+        TestFiles.write(sourceSet.sourceDirectory, "d/G.java", "package d;\nclass G { @lombok.experimental.Delegate F f; }\n");
+        final DependencyGraph graph = graph();
+        graph.change(sourceSet.file("d/F.java"));
+        // The @Data class next to the changed file comes out of delombok the same...
+        assertEquals(Collections.singleton("d/G.java"), paths(graph.getAffected()));
+    }
+
+    @Test
+    public void configsAffectTheLombokFilesBelowThem () throws IOException {
+        TestFiles.write(sourceSet.sourceDirectory, "d/sub/lombok.config", "lombok.accessors.fluent = true\n");
+        final DependencyGraph graph = graph();
+        graph.change(sourceSet.file("d/sub/lombok.config"));
+        assertEquals(Collections.singleton("d/sub/D.java"), paths(graph.getAffected()));
+
+        final DependencyGraph other = graph();
+        other.change(sourceSet.file("d/lombok.config"));
+        assertEquals(new HashSet<String>(Arrays.asList("d/E.java", "d/sub/D.java")), paths(other.getAffected()));
+    }
+
+    @Test
+    public void findsInheritedConfigsUpToStopBubbling () throws IOException {
+        final File root = folder.newFolder("project");
+        final File sourceDirectory = new File(root, "module/src");
+        final File top = TestFiles.write(root, "lombok.config", "config.stopBubbling = true\n");
+        final File middle = TestFiles.write(root, "module/lombok.config", "lombok.log.fieldName = LOG\n");
+        final File own = TestFiles.write(root, "module/src/lombok.config", "lombok.accessors.chain = true\n");
+        assertEquals(Arrays.asList(middle, top), DependencyGraph.findInheritedConfigs(sourceDirectory));
+        assertEquals(Arrays.asList(own, middle, top), DependencyGraph.findConfigs(sourceDirectory));
+
+        TestFiles.write(root, "module/lombok.config", "CONFIG.stopBubbling = true # here\n");
+        assertEquals(Collections.singletonList(middle), DependencyGraph.findInheritedConfigs(sourceDirectory));
+        TestFiles.write(root, "module/src/lombok.config", "config.stopBubbling = true\n");
+        assertEquals(Collections.emptyList(), DependencyGraph.findInheritedConfigs(sourceDirectory));
+    }
+}
@@ -0,0 +1,64 @@
+package lombok.maven;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ImportScannerTest {
+
+    private static final String SOURCE = "package a.b;\n"
+        + "import java.util.Map.Entry;\n"
+        + "import static java.util.Collections.emptyList;\n"
+        + "import org.example.*;\n"
+        + "import org.example.Outer.*;\n"
+        + "class A { java.io.File file; lombok.experimental.Delegate d; }\n";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void findsPackages () throws IOException {
+        final File source = TestFiles.write(folder.getRoot(), "A.java", SOURCE);
+        final Set<String> packages = new TreeSet<String>();
+        ImportScanner.scan(source, packages);
+        assertEquals(new HashSet<String>(Arrays.asList("a.b", "java.util", "org.example", "java.io", "lombok.experimental")),
+            packages);
+    }
+
+    @Test
+    public void findsReferences () throws IOException {
+        final File source = TestFiles.write(folder.getRoot(), "A.java", SOURCE);
+        final Set<String> references = new TreeSet<String>();
+        ImportScanner.scanReferences(source, references);
+        assertEquals(new HashSet<String>(Arrays.asList("a.b.*", "java.util.Map", "java.util.Collections", "org.example.*",
+            "org.example.Outer", "java.io.File", "lombok.experimental.Delegate")), references);
+    }
+
+    @Test
+    public void defaultPackageIsAWildcard () throws IOException {
+        final File source = TestFiles.write(folder.getRoot(), "A.java", "class A {}\n");
+        final Set<String> references = new TreeSet<String>();
+        ImportScanner.scanReferences(source, references);
+        assertEquals(new HashSet<String>(Arrays.asList("*")), references);
+    }
+
+    @Test
+    public void splitsImportedNames () {
+        assertEquals("java.util", ImportScanner.packageOf("java.util.Map.Entry", false));
+        assertEquals("java.util", ImportScanner.packageOf("java.util", true));
+        assertEquals("java.util", ImportScanner.packageOf("java.util.Map", true));
+        assertEquals("", ImportScanner.packageOf("Top", false));
+        assertEquals("java.util.Map", ImportScanner.typeOf("java.util.Map.Entry", false));
+        assertEquals("java.util.*", ImportScanner.typeOf("java.util", true));
+        assertEquals("java.util.Map", ImportScanner.typeOf("java.util.Map", true));
+    }
+}
@@ -0,0 +1,70 @@
+package lombok.maven;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LombokDetectorTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private boolean mayUseLombok (final String source) throws IOException {
+        final File file = TestFiles.write(folder.getRoot(), "Source.java", source);
+        return LombokDetector.mayUseLombok(file);
+    }
+
+    @Test
+    public void findsImportsAndQualifiedNames () throws IOException {
+        assertTrue(mayUseLombok("import lombok.Data;\n@Data class A {}\n"));
+        assertTrue(mayUseLombok("@lombok.Value class A {}"));
+        assertTrue(mayUseLombok("lombok"));
+    }
+
+    @Test
+    public void ignoresLongerIdentifiers () throws IOException {
+        assertFalse(mayUseLombok("package org.projectlombok.test;\nclass A { int lomboks; }\n"));
+        assertFalse(mayUseLombok("class A {}\n"));
+    }
+
+    @Test
+    public void unicodeEscapesMayHideLombok () throws IOException {
+        assertTrue(mayUseLombok("import \\u006Combok.Data;\nclass A {}\n"));
+        assertTrue(mayUseLombok("class A { char c = '\\u0041'; }\n"));
+    }
+
+    @Test
+    public void supportsEncodingsCompatibleWithAscii () {
+        assertTrue(LombokDetector.supports(Charset.forName("UTF-8")));
+        assertTrue(LombokDetector.supports(Charset.forName("ISO-8859-1")));
+        assertFalse(LombokDetector.supports(Charset.forName("UTF-16")));
+    }
+
+    private boolean mayDependOnOtherTypes (final String source) throws IOException {
+        final File file = TestFiles.write(folder.getRoot(), "Source.java", source);
+        return LombokDetector.mayDependOnOtherTypes(file);
+    }
+
+    @Test
+    public void findsFeaturesThatDependOnOtherTypes () throws IOException {
+        assertTrue(mayDependOnOtherTypes("class A { void f() { val x = g(); } }"));
+        assertTrue(mayDependOnOtherTypes("class A { void f() { var x = g(); } }"));
+        assertTrue(mayDependOnOtherTypes("class A { @lombok.experimental.Delegate B b; }"));
+        assertTrue(mayDependOnOtherTypes("@ExtensionMethod(B.class) class A {}"));
+        assertTrue(mayDependOnOtherTypes("@SuperBuilder class A extends B {}"));
+        assertTrue(mayDependOnOtherTypes("class A { String s = \"\\u0041\"; }"));
+    }
+
+    @Test
+    public void ignoresOtherFeatures () throws IOException {
+        assertFalse(mayDependOnOtherTypes("@lombok.Data class A { int value; Object variable; }"));
+        assertFalse(mayDependOnOtherTypes("@lombok.Builder class A { int valid; }"));
+    }
+}
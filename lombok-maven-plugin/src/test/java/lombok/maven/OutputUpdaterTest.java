@@ -0,0 +1,81 @@
+package lombok.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OutputUpdaterTest {
+
+    private static final String FIRST = "// Generated by delombok at Mon Jan 01 10:00:00 UTC 2024\nclass A {}\n";
+
+    private static final String SECOND = "// Generated by delombok at Tue Jan 02 11:30:00 UTC 2024\nclass A {}\n";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static ByteBuffer bytes (final String content) {
+        return ByteBuffer.wrap(content.getBytes(TestFiles.UTF_8));
+    }
+
+    @Test
+    public void ignoresTheTimeStampOfDelombok () {
+        assertTrue(OutputUpdater.sameContent(bytes(FIRST), bytes(SECOND)));
+        assertFalse(OutputUpdater.sameContent(bytes(FIRST), bytes(SECOND.replace("class A", "class B"))));
+    }
+
+    @Test
+    public void comparesEverythingElse () {
+        assertTrue(OutputUpdater.sameContent(bytes("class A {}\n"), bytes("class A {}\n")));
+        assertFalse(OutputUpdater.sameContent(bytes("// Generated by hand\nclass A {}\n"), bytes("// Generated by foot\nclass A {}\n")));
+        assertFalse(OutputUpdater.sameContent(bytes(FIRST), bytes("class A {}\n")));
+    }
+
+    @Test
+    public void leavesUnchangedOutputsAlone () throws IOException {
+        final File target = TestFiles.write(folder.getRoot(), "a/A.java", FIRST);
+        assertTrue(target.setLastModified(1000000L));
+        final OutputUpdater updater = new OutputUpdater(true);
+        updater.write(target, bytes(SECOND));
+        assertEquals(1, updater.getUnchangedCount());
+        assertEquals(0, updater.getWrittenCount());
+        assertEquals(1000000L, target.lastModified());
+        assertEquals(FIRST, TestFiles.read(target));
+
+        updater.write(target, bytes(SECOND.replace("class A", "class B")));
+        assertEquals(1, updater.getWrittenCount());
+        assertEquals(SECOND.replace("class A", "class B"), TestFiles.read(target));
+    }
+
+    @Test
+    public void alwaysWritesUnlessOnlyChangesAre () throws IOException {
+        final File target = TestFiles.write(folder.getRoot(), "A.java", FIRST);
+        final OutputUpdater updater = new OutputUpdater(false);
+        updater.write(target, bytes(SECOND));
+        assertEquals(1, updater.getWrittenCount());
+        assertEquals(SECOND, TestFiles.read(target));
+    }
+
+    @Test
+    public void copiesAndDeletes () throws IOException {
+        final File source = TestFiles.write(folder.getRoot(), "src/notes.txt", "notes");
+        final File target = new File(folder.getRoot(), "out/notes.txt");
+        final OutputUpdater updater = new OutputUpdater(true);
+        updater.copy(source, target);
+        updater.copy(source, target);
+        assertEquals("notes", TestFiles.read(target));
+        assertEquals(1, updater.getWrittenCount());
+        assertEquals(1, updater.getUnchangedCount());
+        updater.delete(target);
+        updater.delete(target);
+        assertFalse(target.exists());
+        assertEquals(1, updater.getDeletedCount());
+    }
+}
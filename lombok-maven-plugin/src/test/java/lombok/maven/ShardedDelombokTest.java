@@ -0,0 +1,129 @@
+package lombok.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ShardedDelombokTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void parsesThreadCounts () {
+        assertEquals(4, ShardedDelombok.parseThreads("4"));
+        assertEquals(Runtime.getRuntime().availableProcessors(), ShardedDelombok.parseThreads(" 1C "));
+        assertEquals(2 * Runtime.getRuntime().availableProcessors(), ShardedDelombok.parseThreads("2c"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroThreads () {
+        ShardedDelombok.parseThreads("0");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownThreadCounts () {
+        ShardedDelombok.parseThreads("many");
+    }
+
+    private List<SourceFile> layOut (final String... paths) throws IOException {
+        final File sourceDirectory = folder.newFolder("src");
+        final SourceSet sourceSet = new SourceSet("main", sourceDirectory, folder.newFolder("out"));
+        final List<SourceFile> sources = new ArrayList<SourceFile>();
+        for (final String path : paths) {
+            TestFiles.write(sourceDirectory, path, "class X {}\n");
+            sources.add(sourceSet.file(path));
+        }
+        return sources;
+    }
+
+    @Test
+    public void keepsPackagesTogether () throws IOException {
+        final List<SourceFile> sources = layOut("a/A1.java", "a/A2.java", "b/B1.java", "b/B2.java", "c/C1.java", "c/C2.java");
+        final List<List<SourceFile>> shards = ShardedDelombok.partition(sources, 3);
+        assertEquals(3, shards.size());
+        final Set<SourceFile> all = new HashSet<SourceFile>();
+        for (final List<SourceFile> shard : shards) {
+            assertEquals(2, shard.size());
+            assertEquals(shard.get(0).getPackagePath(), shard.get(1).getPackagePath());
+            all.addAll(shard);
+        }
+        assertEquals(new HashSet<SourceFile>(sources), all);
+    }
+
+    @Test
+    public void splitsPackagesLargerThanAFairShare () throws IOException {
+        final List<SourceFile> sources = layOut("a/A1.java", "a/A2.java", "a/A3.java", "a/A4.java");
+        final List<List<SourceFile>> shards = ShardedDelombok.partition(sources, 2);
+        assertEquals(2, shards.size());
+        assertEquals(2, shards.get(0).size());
+        assertEquals(2, shards.get(1).size());
+    }
+
+    @Test
+    public void neverMakesMoreShardsThanFiles () throws IOException {
+        final List<SourceFile> sources = layOut("a/A.java", "b/B.java");
+        assertEquals(2, ShardedDelombok.partition(sources, 8).size());
+    }
+
+    @Test
+    public void isDeterministic () throws IOException {
+        final List<SourceFile> sources = layOut("a/A.java", "b/B.java", "c/C.java", "d/D.java", "e/E.java");
+        final List<SourceFile> reversed = new ArrayList<SourceFile>(sources);
+        Collections.reverse(reversed);
+        assertEquals(ShardedDelombok.partition(sources, 2), ShardedDelombok.partition(reversed, 2));
+        for (final List<SourceFile> shard : ShardedDelombok.partition(sources, 2)) {
+            assertFalse(shard.isEmpty());
+        }
+    }
+
+    @Test
+    public void waitsForTheOtherShardsWhenOneFails () throws IOException {
+        final File sourceDirectory = folder.newFolder("src");
+        final File outputDirectory = folder.newFolder("out");
+        // The output directory of the failing shard cannot be created...
+        final File blocked = folder.newFile("blocked");
+        final List<SourceFile> failing = new ArrayList<SourceFile>();
+        failing.add(new SourceFile(sourceDirectory, "a/A.java", blocked));
+        TestFiles.write(sourceDirectory, "a/A.java", "package a;\nclass A {}\n");
+        final List<SourceFile> succeeding = new ArrayList<SourceFile>();
+        for (int i = 0; i < 20; i++) {
+            final String path = "b/B" + i + ".java";
+            TestFiles.write(sourceDirectory, path, "package b;\n@lombok.Data class B" + i + " { int x; String y; }\n");
+            succeeding.add(new SourceFile(sourceDirectory, path, outputDirectory));
+        }
+        final List<List<SourceFile>> shards = new ArrayList<List<SourceFile>>();
+        shards.add(failing);
+        shards.add(succeeding);
+        final DelombokSettings settings = new DelombokSettings(false, System.getProperty("java.class.path"),
+            sourceDirectory.getPath(), "UTF-8", null, outputDirectory, false, 0);
+        try {
+            ShardedDelombok.delombok(settings, shards, new PrintStream(new ByteArrayOutputStream()), new OutputUpdater(false), null);
+            fail("The failing shard did not fail");
+        } catch (final IOException e) {
+            // expected...
+        } catch (final InvocationTargetException e) {
+            // expected...
+        }
+        // The other shard completed before the failure was thrown...
+        for (final SourceFile source : succeeding) {
+            assertTrue(source.path, source.getOutput().isFile());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package lombok.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SourceScannerTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+
+    @Before
+    public void layOut () throws IOException {
+        directory = folder.newFolder("src");
+        TestFiles.write(directory, "Top.java", "");
+        TestFiles.write(directory, "a/A.java", "");
+        TestFiles.write(directory, "a/notes.txt", "");
+        TestFiles.write(directory, "a/b/B.java", "");
+        TestFiles.write(directory, "legacy/Old.java", "");
+        TestFiles.write(directory, "a/legacy/Older.java", "");
+    }
+
+    private List<String> scan (final List<String> includes, final List<String> excludes) throws IOException {
+        return new SourceScanner(includes, excludes).scan(directory);
+    }
+
+    @Test
+    public void findsEveryFileSortedWithSlashes () throws IOException {
+        assertEquals(Arrays.asList("Top.java", "a/A.java", "a/b/B.java", "a/legacy/Older.java", "a/notes.txt", "legacy/Old.java"),
+            SourceScanner.ALL.scan(directory));
+        assertFalse(SourceScanner.ALL.isFiltering());
+    }
+
+    @Test
+    public void leadingDoubleStarAlsoMatchesAtTheTop () throws IOException {
+        assertEquals(Arrays.asList("Top.java", "a/A.java", "a/b/B.java", "a/legacy/Older.java", "legacy/Old.java"),
+            scan(Collections.singletonList("**/*.java"), null));
+    }
+
+    @Test
+    public void singleStarStaysWithinADirectory () throws IOException {
+        assertEquals(Arrays.asList("a/A.java"), scan(Collections.singletonList("a/*.java"), null));
+    }
+
+    @Test
+    public void trailingSlashExcludesEverythingBelow () throws IOException {
+        assertEquals(Arrays.asList("Top.java", "a/A.java", "a/b/B.java", "a/legacy/Older.java", "a/notes.txt"),
+            scan(null, Collections.singletonList("legacy/")));
+    }
+
+    @Test
+    public void excludedDirectoriesMatchAtAnyDepth () throws IOException {
+        final SourceScanner scanner = new SourceScanner(null, Collections.singletonList("**/legacy/**"));
+        assertTrue(scanner.isFiltering());
+        assertEquals(Arrays.asList("Top.java", "a/A.java", "a/b/B.java", "a/notes.txt"), scanner.scan(directory));
+    }
+
+    @Test
+    public void excludesWinOverIncludes () throws IOException {
+        assertEquals(Arrays.asList("a/A.java", "a/b/B.java"),
+            scan(Collections.singletonList("a/**"), Arrays.asList("**/*.txt", "**/legacy/**")));
+    }
+
+    @Test
+    public void missingDirectoryHasNoFiles () throws IOException {
+        assertTrue(SourceScanner.ALL.scan(new File(directory, "missing")).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidPatterns () {
+        new SourceScanner(Collections.singletonList("a/[b"), null);
+    }
+}
@@ -0,0 +1,160 @@
+package lombok.maven;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SourcesJarTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static ByteBuffer bytes (final String content) {
+        return ByteBuffer.wrap(content.getBytes(TestFiles.UTF_8));
+    }
+
+    private File write (final String name, final File outputDirectory, final long time, final String... paths) throws IOException {
+        final File file = new File(folder.getRoot(), name);
+        final SourcesJar jar = new SourcesJar(file, Collections.singletonList(outputDirectory), time);
+        for (final String path : paths) {
+            jar.put(new File(outputDirectory, path), bytes("// " + path + '\n'));
+        }
+        jar.commit();
+        return file;
+    }
+
+    private static List<String> names (final File file) throws IOException {
+        final List<String> names = new ArrayList<String>();
+        final JarFile jar = new JarFile(file);
+        try {
+            for (final Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements();) {
+                names.add(entries.nextElement().getName());
+            }
+        } finally {
+            jar.close();
+        }
+        return names;
+    }
+
+    @Test
+    public void parsesTimestamps () {
+        assertEquals(SourcesJar.DEFAULT_TIME, SourcesJar.parseTimestamp(null));
+        assertEquals(SourcesJar.DEFAULT_TIME, SourcesJar.parseTimestamp("a"));
+        assertEquals(1577836800000L, SourcesJar.parseTimestamp("1577836800"));
+        assertEquals(1577836800000L, SourcesJar.parseTimestamp("2020-01-01T00:00:00Z"));
+        assertEquals(1577836800000L, SourcesJar.parseTimestamp("2020-01-01T01:00:00+01:00"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownTimestamps () {
+        SourcesJar.parseTimestamp("yesterday");
+    }
+
+    @Test
+    public void isReproducible () throws IOException {
+        final File outputDirectory = folder.newFolder("out");
+        final File first = write("first.jar", outputDirectory, SourcesJar.DEFAULT_TIME, "b/B.java", "a/A.java", "a/b/C.java");
+        final File second = write("second.jar", outputDirectory, SourcesJar.DEFAULT_TIME, "a/b/C.java", "a/A.java", "b/B.java");
+        assertArrayEquals(Files.readAllBytes(first.toPath()), Files.readAllBytes(second.toPath()));
+        assertEquals(Arrays.asList("META-INF/", "META-INF/MANIFEST.MF", "a/", "a/A.java", "a/b/", "a/b/C.java", "b/", "b/B.java"),
+            names(first));
+
+        final JarFile jar = new JarFile(first);
+        try {
+            assertEquals(SourcesJar.DEFAULT_TIME, jar.getEntry("a/A.java").getTime()
+                - TimeZone.getDefault().getOffset(SourcesJar.DEFAULT_TIME));
+        } finally {
+            jar.close();
+        }
+    }
+
+    @Test
+    public void delombokedFilesTakePrecedence () throws IOException {
+        final File outputDirectory = folder.newFolder("out");
+        final File sourceRoot = folder.newFolder("java");
+        TestFiles.write(sourceRoot, "a/A.java", "// plain\n");
+        TestFiles.write(sourceRoot, "c/C.java", "// plain\n");
+        final File file = new File(folder.getRoot(), "sources.jar");
+        final SourcesJar jar = new SourcesJar(file, Collections.singletonList(outputDirectory), SourcesJar.DEFAULT_TIME);
+        jar.put(new File(outputDirectory, "a/A.java"), bytes("// delomboked\n"));
+        assertEquals(1, jar.putDirectory(sourceRoot));
+        jar.commit();
+        final JarFile result = new JarFile(file);
+        try {
+            assertEquals("// delomboked\n", new String(read(result, "a/A.java"), TestFiles.UTF_8));
+            assertEquals("// plain\n", new String(read(result, "c/C.java"), TestFiles.UTF_8));
+        } finally {
+            result.close();
+        }
+    }
+
+    private static byte[] read (final JarFile jar, final String name) throws IOException {
+        final InputStream in = jar.getInputStream(jar.getEntry(name));
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[1024];
+            for (int length; (length = in.read(buffer)) > 0;) {
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void keepsTheLastContentOfAFile () throws IOException {
+        final File outputDirectory = folder.newFolder("out");
+        final File file = new File(folder.getRoot(), "sources.jar");
+        final SourcesJar jar = new SourcesJar(file, Collections.singletonList(outputDirectory), SourcesJar.DEFAULT_TIME);
+        jar.put(new File(outputDirectory, "a/A.java"), bytes("// first\n"));
+        jar.put(new File(outputDirectory, "a/A.java"), bytes("// second\n"));
+        assertEquals(1, jar.getEntryCount());
+        jar.commit();
+        assertEquals(Arrays.asList("META-INF/", "META-INF/MANIFEST.MF", "a/", "a/A.java"), names(file));
+        final JarFile result = new JarFile(file);
+        try {
+            assertEquals("// second\n", new String(read(result, "a/A.java"), TestFiles.UTF_8));
+        } finally {
+            result.close();
+        }
+        // Nothing is left next to the jar...
+        assertEquals(Arrays.asList("out", "sources.jar"), sorted(folder.getRoot().list()));
+    }
+
+    private static List<String> sorted (final String[] names) {
+        final List<String> list = new ArrayList<String>(Arrays.asList(names));
+        Collections.sort(list);
+        return list;
+    }
+
+    @Test
+    public void abortLeavesThePreviousJarAlone () throws IOException {
+        final File outputDirectory = folder.newFolder("out");
+        final File file = write("sources.jar", outputDirectory, SourcesJar.DEFAULT_TIME, "a/A.java");
+        final byte[] before = Files.readAllBytes(file.toPath());
+        final SourcesJar jar = new SourcesJar(file, Collections.singletonList(outputDirectory), SourcesJar.DEFAULT_TIME);
+        jar.put(new File(outputDirectory, "b/B.java"), bytes("class B {}"));
+        jar.abort();
+        assertArrayEquals(before, Files.readAllBytes(file.toPath()));
+        assertEquals(Arrays.asList("out", "sources.jar"), sorted(folder.getRoot().list()));
+    }
+}
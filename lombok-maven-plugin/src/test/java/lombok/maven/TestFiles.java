@@ -0,0 +1,36 @@
+package lombok.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+/**
+ * Helpers to lay out source trees in tests.
+ */
+final class TestFiles {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private TestFiles () {
+    }
+
+    /**
+     * Writes a file, creating its parent directories.
+     *
+     * @param path the path of the file relative to the directory, using '/' as separator.
+     */
+    static File write (final File directory, final String path, final String content) throws IOException {
+        final File file = new File(directory, path);
+        final File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        Files.write(file.toPath(), content.getBytes(UTF_8));
+        return file;
+    }
+
+    static String read (final File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), UTF_8);
+    }
+}